@@ -18,6 +18,7 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -81,12 +82,14 @@ public abstract class AbstractBuilderRunnerMojo extends AbstractJ2CLMojo impleme
             bytecodeClasspath = cleanClassPath(artifacts, bytecodeClasspath);
             getLog().info("cleaned bytecodeClasspath " + bytecodeClasspath);
             // TODO There must be one specific classpath for each module, i.e. create one every time a specific module is built -> propagate to singlecompiler
-            final List<File> orderedClasspath = DependencyBuilder.getOrderedClasspath(session, dependencyGraphBuilder, project, reactorProjects, null);
+            final DependencyNode dependencyNode = DependencyBuilder.getDependencyNode(session, dependencyGraphBuilder, project, reactorProjects, null);
+            final List<File> orderedClasspath = DependencyBuilder.getOrderedClasspath(dependencyNode);
             getLog().info("orderedClasspath " + orderedClasspath);
+            final Map<File, Set<File>> dependencyGraph = DependencyBuilder.getDependencyGraph(dependencyNode, repoSystem, repoSession, remoteRepos);
             final Map<String, MavenProject> baseDirProjectMap = new HashMap<>();
             reactorProjects.forEach(mavenProject -> mavenProject.getCompileSourceRoots().forEach(sourceRoot -> baseDirProjectMap.put(sourceRoot, mavenProject)));
             project.getCompileSourceRoots().forEach(sourceRoot -> baseDirProjectMap.put(sourceRoot, project));
-            internalExecute(orderedClasspath, workingDirs.get(targetPath), baseDirProjectMap);
+            internalExecute(orderedClasspath, dependencyGraph, workingDirs.get(targetPath), baseDirProjectMap);
         } catch (Exception e) {
             getLog().error(e);
             throw new MojoExecutionException(e.getMessage());
@@ -103,6 +106,11 @@ public abstract class AbstractBuilderRunnerMojo extends AbstractJ2CLMojo impleme
         return new File(classesDir);
     }
 
+    @Override
+    public File getGeneratedClassesDir() {
+        return new File(generatedClassesDir);
+    }
+
     @Override
     public boolean isDeclareLegacyNamespaces() {
         return declareLegacyNamespaces;
@@ -168,12 +176,62 @@ public abstract class AbstractBuilderRunnerMojo extends AbstractJ2CLMojo impleme
         return jsZipCacheDir;
     }
 
+    @Override
+    public long getJsZipCacheMaxSize() {
+        return jsZipCacheMaxSize > 0 ? jsZipCacheMaxSize * 1024 * 1024 : 0;
+    }
+
+    @Override
+    public boolean isRetryFailedDependencies() {
+        return retryFailedDependencies;
+    }
+
+    @Override
+    public String getSharedJsZipCache() {
+        return sharedJsZipCache;
+    }
+
+    @Override
+    public boolean isStoreToSharedJsZipCache() {
+        return storeToSharedJsZipCache;
+    }
+
     @Override
     public String getOutputJsPathDir() {
         return outputJsPathDir;
     }
 
-    protected abstract void internalExecute(List<File> orderedClasspath, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws MojoExecutionException;
+    @Override
+    public boolean isUseFileWatcher() {
+        return useFileWatcher;
+    }
+
+    @Override
+    public boolean isInMemoryClassOutput() {
+        return inMemoryClassOutput;
+    }
+
+    @Override
+    public long getChangesQuietPeriod() {
+        return changesQuietPeriod;
+    }
+
+    @Override
+    public long getChangesMaxWait() {
+        return changesMaxWait;
+    }
+
+    @Override
+    public int getDependencyThreads() {
+        return dependencyThreads > 0 ? dependencyThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public int getModuleThreads() {
+        return moduleThreads > 0 ? moduleThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    protected abstract void internalExecute(List<File> orderedClasspath, Map<File, Set<File>> dependencyGraph, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws MojoExecutionException;
 
     protected void createWorkingDirs() throws MojoExecutionException {
         final Map<String, File> workingDirs = getWorkingDirs();
@@ -48,10 +48,41 @@ public abstract class AbstractJ2CLMojo extends AbstractMojo {
                 usage = "one or more entrypoints to start the app with, from either java or js", */required = true)
     protected List<String> entrypoint = new ArrayList<>();
 
-    @Parameter(name = "jsZipCacheDir", /*usage = "directory to cache generated jszips in. Should be " +
-                "cleared when j2cl version changes", */required = true, defaultValue = "${project.basedir}/jsZipCache")
+    /**
+     * Directory to cache the jszips transpiled from dependencies in. Entries are keyed on everything affecting
+     * them (dependency, j2cl and plugin versions, transpiler flags and classpath), so it does not need to be
+     * cleared when j2cl version changes, and it may be shared between branches
+     */
+    @Parameter(name = "jsZipCacheDir", required = true, defaultValue = "${project.basedir}/jsZipCache")
     protected String jsZipCacheDir;
 
+    /**
+     * Maximum size, in megabytes, of the <b>jsZipCacheDir</b>: least recently used jszips beyond it are evicted, in
+     * background, at the end of each setup. <code>0</code> means unbounded
+     */
+    @Parameter(name = "jsZipCacheMaxSize", defaultValue = "2048")
+    protected long jsZipCacheMaxSize = 2048;
+
+    /**
+     * Transpile again the dependencies that already failed to be transpiled with the same inputs, instead of skipping them
+     */
+    @Parameter(name = "retryFailedDependencies", defaultValue = "false")
+    protected boolean retryFailedDependencies;
+
+    /**
+     * Cache of the jszips transpiled from dependencies shared between developers and CI agents, looked up before
+     * transpiling a dependency: either a directory, or an <b>http(s)</b> url supporting <code>GET</code> and <code>PUT</code>
+     */
+    @Parameter(name = "sharedJsZipCache")
+    protected String sharedJsZipCache;
+
+    /**
+     * Store the jszips transpiled from dependencies to the <b>sharedJsZipCache</b>, too (e.g. set to <code>false</code>
+     * on developer machines, to only read what CI agents store)
+     */
+    @Parameter(name = "storeToSharedJsZipCache", defaultValue = "true")
+    protected boolean storeToSharedJsZipCache = true;
+
     //lifted straight from closure for consistency
     @Parameter(name = "define"/* ,
                aliases = {"--D", "-D"},
@@ -121,12 +152,57 @@ public abstract class AbstractJ2CLMojo extends AbstractMojo {
                 hidden = true*/, defaultValue = "${basedir}/target/js-sources")
     protected String intermediateJsPath;
 
+    /**
+     * Directory where sources generated by annotation processors are written: it is kept across runs, together with
+     * the incremental state, so that only changed generated sources are transpiled again
+     */
     @Parameter(name = "generatedClassesDir"/*,
                 usage =
                         "Enable goog.module.declareLegacyNamespace() for generated goog.module().",
                 hidden = true*/, defaultValue = "${basedir}/target/gen-classes")
     protected String generatedClassesDir;
 
+    /**
+     * Detect source changes (<b>run</b> goal) through file system events; if <code>false</code>, or if events
+     * are not available, source directories are polled
+     */
+    @Parameter(name = "useFileWatcher", defaultValue = "true")
+    protected boolean useFileWatcher = true;
+
+    /**
+     * Keep the classes compiled by javac in memory, where following compilations read them, and write them to
+     * <b>classesDir</b> in background, instead of waiting for each one to be written
+     */
+    @Parameter(name = "inMemoryClassOutput", defaultValue = "false")
+    protected boolean inMemoryClassOutput;
+
+    /**
+     * Milliseconds without further changes to wait (<b>run</b> goal) before starting a compilation, so that a
+     * burst of changes is compiled only once; 0 to start immediately
+     */
+    @Parameter(name = "changesQuietPeriod", defaultValue = "300")
+    protected long changesQuietPeriod = 300;
+
+    /**
+     * Maximum milliseconds to wait (<b>run</b> goal) for a burst of changes to end before starting a compilation anyway
+     */
+    @Parameter(name = "changesMaxWait", defaultValue = "3000")
+    protected long changesMaxWait = 3000;
+
+    /**
+     * Number of threads used to transpile dependency jars (independent ones are transpiled concurrently);
+     * 0 to use the number of available processors
+     */
+    @Parameter(name = "dependencyThreads", defaultValue = "0")
+    protected int dependencyThreads = 0;
+
+    /**
+     * Number of threads used to compile and transpile the modules (independent ones are compiled concurrently, and each
+     * one as soon as the ones it depends on are compiled); 0 to use the number of available processors
+     */
+    @Parameter(name = "moduleThreads", defaultValue = "0")
+    protected int moduleThreads = 0;
+
     /**
      * The additional <b>artifacts</b> to deploy
      */
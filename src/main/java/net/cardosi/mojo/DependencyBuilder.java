@@ -18,10 +18,15 @@ package net.cardosi.mojo;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
 import org.apache.maven.execution.MavenSession;
@@ -35,6 +40,14 @@ import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
 import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
 import org.apache.maven.shared.dependency.graph.DependencyNode;
 import org.apache.maven.shared.dependency.graph.traversal.CollectingDependencyNodeVisitor;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
 
 /**
  * Class used to create a Dependency tree for a given artifact
@@ -46,6 +59,9 @@ public class DependencyBuilder {
      */
     private static Log log = new SystemStreamLog();
 
+    // ConflictResolver.CONFIG_PROP_VERBOSE: losers are kept in the graph, without children
+    private static final String CONFLICT_RESOLVER_VERBOSE = "aether.conflictResolver.verbose";
+
     /**
      * Retrieve a <code>List</code> of the dependency files ordered from last children (= without dependency) to root
      * @param session
@@ -58,6 +74,16 @@ public class DependencyBuilder {
      */
     public static List<File> getOrderedClasspath(MavenSession session, DependencyGraphBuilder dependencyGraphBuilder, MavenProject project, List<MavenProject> reactorProjects, String scope) throws MojoExecutionException {
         final DependencyNode dependencyNode = getDependencyNode(session, dependencyGraphBuilder, project, reactorProjects, null);
+        return getOrderedClasspath(dependencyNode);
+    }
+
+    /**
+     * Retrieve a <code>List</code> of the dependency files of the given <code>DependencyNode</code> ordered from last children (= without dependency) to root
+     * @param dependencyNode
+     * @return
+     * @throws MojoExecutionException
+     */
+    public static List<File> getOrderedClasspath(DependencyNode dependencyNode) throws MojoExecutionException {
         List<File> toReturn = new ArrayList<>();
         recursivelyPopulateList(toReturn, dependencyNode);
         return getDependencyNodeList(dependencyNode);
@@ -65,8 +91,144 @@ public class DependencyBuilder {
 //        return toReturn;
     }
 
+    /**
+     * Retrieve the dependency graph of the given <code>DependencyNode</code>, i.e. a <code>Map</code> with the direct dependency files of each dependency file.
+     * <p>
+     * The given (resolved) tree lists a dependency omitted as duplicate, or as conflict loser, under one parent only, so
+     * the edges are taken from the full (verbose) collection of the same dependencies, too (see {@link #getDependencyGraph(DependencyNode, org.eclipse.aether.graph.DependencyNode)})
+     * @param dependencyNode
+     * @param repoSystem
+     * @param repoSession
+     * @param remoteRepos
+     * @return
+     */
+    public static Map<File, Set<File>> getDependencyGraph(DependencyNode dependencyNode, RepositorySystem repoSystem, RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos) {
+        return getDependencyGraph(dependencyNode, getVerboseDependencyNode(dependencyNode, repoSystem, repoSession, remoteRepos));
+    }
+
+    /**
+     * Retrieve the dependency graph of the given resolved <code>DependencyNode</code>, merging the edges found in it
+     * and in the given verbose one by groupId:artifactId, so that every parent of a dependency is linked to its resolved file
+     * @param dependencyNode
+     * @param verboseDependencyNode the full collection of the same dependencies, or <code>null</code> if not available
+     * @return
+     */
+    static Map<File, Set<File>> getDependencyGraph(DependencyNode dependencyNode, org.eclipse.aether.graph.DependencyNode verboseDependencyNode) {
+        final Map<String, File> files = new HashMap<>();
+        final Map<String, Set<String>> edges = new HashMap<>();
+        recursivelyPopulateGraph(files, edges, dependencyNode);
+        if (verboseDependencyNode != null) {
+            recursivelyPopulateGraph(edges, verboseDependencyNode, new HashSet<>());
+        }
+        final Map<File, Set<File>> toReturn = new HashMap<>();
+        files.forEach((key, file) -> {
+            final Set<File> dependencies = toReturn.computeIfAbsent(file, k -> new HashSet<>());
+            edges.getOrDefault(key, Collections.emptySet()).stream()
+                    .map(files::get)
+                    .filter(dependency -> dependency != null && !dependency.equals(file))
+                    .forEach(dependencies::add);
+        });
+        return toReturn;
+    }
+
+    /**
+     * Retrieve the <code>DependencyNode</code> of the given <code>MavenProject</code>
+     * @param session
+     * @param dependencyGraphBuilder
+     * @param project
+     * @param reactorProjects
+     * @param scope
+     * @return
+     * @throws MojoExecutionException
+     */
+    public static DependencyNode getDependencyNode(MavenSession session, DependencyGraphBuilder dependencyGraphBuilder, MavenProject project, List<MavenProject> reactorProjects, String scope) throws MojoExecutionException {
+        try {
+            // TODO: note that filter does not get applied due to MSHARED-4
+            ArtifactFilter artifactFilter = createResolvingArtifactFilter(scope);
+            ProjectBuildingRequest buildingRequest =
+                    new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+            buildingRequest.setProject(project);
+            // non-verbose mode use dependency graph component, which gives consistent results with Maven version
+            // running
+            return dependencyGraphBuilder.buildDependencyGraph(buildingRequest, null, reactorProjects);
+        } catch (DependencyGraphBuilderException exception) {
+            throw new MojoExecutionException("Cannot build project dependency graph", exception);
+        }
+    }
+
+    /**
+     * Collect again, in verbose mode, the direct dependencies of the given <code>DependencyNode</code>, so that dependencies
+     * omitted as duplicates or as conflict losers are kept under all their parents
+     * @param dependencyNode
+     * @param repoSystem
+     * @param repoSession
+     * @param remoteRepos
+     * @return the root of the collected graph, or <code>null</code> if collection failed
+     */
+    public static org.eclipse.aether.graph.DependencyNode getVerboseDependencyNode(DependencyNode dependencyNode, RepositorySystem repoSystem, RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos) {
+        final DefaultRepositorySystemSession verboseSession = new DefaultRepositorySystemSession(repoSession);
+        verboseSession.setConfigProperty(CONFLICT_RESOLVER_VERBOSE, true);
+        final CollectRequest collectRequest = new CollectRequest();
+        collectRequest.setRepositories(remoteRepos);
+        for (DependencyNode child : dependencyNode.getChildren()) {
+            final Artifact artifact = child.getArtifact();
+            final String extension = artifact.getArtifactHandler() != null ? artifact.getArtifactHandler().getExtension() : artifact.getType();
+            collectRequest.addDependency(new Dependency(new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier(), extension, artifact.getVersion()),
+                                                        artifact.getScope()));
+        }
+        try {
+            return repoSystem.collectDependencies(verboseSession, collectRequest).getRoot();
+        } catch (DependencyCollectionException e) {
+            log.warn("Failed to collect the full dependency graph, some edges may be missing: " + e.getMessage());
+            // what has been collected so far, if anything
+            return e.getResult() != null ? e.getResult().getRoot() : null;
+        }
+    }
+
     // private methods --------------------------------------------------------
 
+    /**
+     * Add the artifact <code>File</code> (if not null) of the given <code>DependencyNode</code>, and of all its children,
+     * to the given files, and their direct dependencies to the given edges, all keyed by groupId:artifactId
+     * @param files
+     * @param edges
+     * @param dependencyNode
+     */
+    private static void recursivelyPopulateGraph(Map<String, File> files, Map<String, Set<String>> edges, DependencyNode dependencyNode) {
+        final Artifact artifact = dependencyNode.getArtifact();
+        final String key = artifact.getGroupId() + ":" + artifact.getArtifactId();
+        if (artifact.getFile() != null) {
+            files.put(key, artifact.getFile());
+        }
+        final Set<String> dependencies = edges.computeIfAbsent(key, k -> new HashSet<>());
+        for (DependencyNode child : dependencyNode.getChildren()) {
+            dependencies.add(child.getArtifact().getGroupId() + ":" + child.getArtifact().getArtifactId());
+            recursivelyPopulateGraph(files, edges, child);
+        }
+    }
+
+    /**
+     * Add the direct dependencies of the given verbose <code>DependencyNode</code>, and of all its children, to the given
+     * edges, keyed by groupId:artifactId
+     * @param edges
+     * @param dependencyNode
+     * @param visited the already visited nodes, since the collected graph may contain cycles
+     */
+    private static void recursivelyPopulateGraph(Map<String, Set<String>> edges, org.eclipse.aether.graph.DependencyNode dependencyNode, Set<org.eclipse.aether.graph.DependencyNode> visited) {
+        if (!visited.add(dependencyNode)) {
+            return;
+        }
+        final org.eclipse.aether.artifact.Artifact artifact = dependencyNode.getArtifact();
+        // the root of a collection without root artifact has none
+        final Set<String> dependencies = artifact != null ? edges.computeIfAbsent(artifact.getGroupId() + ":" + artifact.getArtifactId(), k -> new HashSet<>()) : new HashSet<>();
+        for (org.eclipse.aether.graph.DependencyNode child : dependencyNode.getChildren()) {
+            if (child.getArtifact() != null) {
+                dependencies.add(child.getArtifact().getGroupId() + ":" + child.getArtifact().getArtifactId());
+            }
+            recursivelyPopulateGraph(edges, child, visited);
+        }
+    }
+
     /**
      * Insert the <code>DependencyNode</code>' artifact <code>File</code> (if not null) to the given <code>List</code>
      * at the first (index 0) position
@@ -111,31 +273,6 @@ public class DependencyBuilder {
         }
     }
 
-    /**
-     * Retrieve the <code>DependencyNode</code> of the given <code>MavenProject</code>
-     * @param session
-     * @param dependencyGraphBuilder
-     * @param project
-     * @param reactorProjects
-     * @param scope
-     * @return
-     * @throws MojoExecutionException
-     */
-    private static DependencyNode getDependencyNode(MavenSession session, DependencyGraphBuilder dependencyGraphBuilder, MavenProject project, List<MavenProject> reactorProjects, String scope) throws MojoExecutionException {
-        try {
-            // TODO: note that filter does not get applied due to MSHARED-4
-            ArtifactFilter artifactFilter = createResolvingArtifactFilter(scope);
-            ProjectBuildingRequest buildingRequest =
-                    new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
-            buildingRequest.setProject(project);
-            // non-verbose mode use dependency graph component, which gives consistent results with Maven version
-            // running
-            return dependencyGraphBuilder.buildDependencyGraph(buildingRequest, null, reactorProjects);
-        } catch (DependencyGraphBuilderException exception) {
-            throw new MojoExecutionException("Cannot build project dependency graph", exception);
-        }
-    }
-
     /**
      * Gets the artifact filter to use when resolving the dependency tree.
      * @return the artifact filter
@@ -3,6 +3,7 @@ package net.cardosi.mojo;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.cardosi.mojo.builder.ListeningCompiler;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -17,10 +18,10 @@ import org.apache.maven.project.MavenProject;
 public class RunMojo extends AbstractBuilderRunnerMojo {
 
     @Override
-    protected void internalExecute(List<File> orderedClasspath, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws MojoExecutionException {
+    protected void internalExecute(List<File> orderedClasspath, Map<File, Set<File>> dependencyGraph, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws MojoExecutionException {
         getLog().info("Start listening...");
         try {
-            ListeningCompiler.run(this, orderedClasspath, targetPath, baseDirProjectMap);
+            ListeningCompiler.run(this, orderedClasspath, dependencyGraph, targetPath, baseDirProjectMap);
         } catch (Exception e) {
             getLog().error(e);
             throw new MojoExecutionException(e.getMessage());
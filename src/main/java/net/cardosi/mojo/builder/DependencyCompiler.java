@@ -0,0 +1,150 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.j2cl.frontend.FrontendUtils;
+import net.cardosi.mojo.tools.Javac;
+
+/**
+ * Compiles the preprocessed sources of a dependency to a bytecode jar, consistent with what is actually transpiled
+ * (i.e. without the <code>@GwtIncompatible</code> members), to be used in place of the original jar in the classpath.
+ * <p>
+ * The resources of the original jar (e.g. <code>META-INF/services</code>) are copied to the bytecode one, together with
+ * the classes it ships without sources (that would be missing from the classpath otherwise), while its other classes,
+ * sources and signatures are not. Entries are written sorted and with a fixed time, so that compiling the same sources
+ * gives the same jar.
+ */
+public class DependencyCompiler {
+
+    // 1980-01-01, the earliest time a zip entry can store
+    private static final long ENTRY_TIME = 315532800000L;
+
+    private final static Logger LOGGER = Logger.getLogger(DependencyCompiler.class.getName());
+
+    private DependencyCompiler() {
+    }
+
+    /**
+     * Compile the given preprocessed sources of the given dependency to the given jar
+     * @param dependency the original jar
+     * @param processedJavaFiles
+     * @param classpath
+     * @param bootstrap
+     * @param tempDir
+     * @param jarOut
+     * @return <code>false</code> if compilation failed, and the jar has not been written
+     * @throws IOException
+     */
+    public static boolean compile(File dependency, List<FrontendUtils.FileInfo> processedJavaFiles, List<File> classpath, File bootstrap, File tempDir, File jarOut) throws IOException {
+        final Path workDir = Files.createTempDirectory(tempDir.toPath(), "bytecode");
+        try {
+            final File classesDir = Files.createDirectory(workDir.resolve("classes")).toFile();
+            final File generatedDir = Files.createDirectory(workDir.resolve("generated")).toFile();
+            final Javac javac = new Javac(generatedDir, classpath, classesDir, bootstrap);
+            try {
+                if (!javac.compile(processedJavaFiles)) {
+                    LOGGER.info("Failed compiling bytecode of " + dependency);
+                    return false;
+                }
+            } finally {
+                javac.close();
+            }
+            writeJar(classesDir.toPath(), dependency, jarOut);
+            return true;
+        } finally {
+            try (Stream<Path> toDelete = Files.walk(workDir)) {
+                toDelete.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Write to the given jar the class files of the given directory, along with the resources and the classes without
+     * sources of the given original jar
+     * @param classesDir
+     * @param dependency
+     * @param jarOut
+     * @throws IOException
+     */
+    static void writeJar(Path classesDir, File dependency, File jarOut) throws IOException {
+        final Map<String, Path> classFiles;
+        try (Stream<Path> walked = Files.walk(classesDir)) {
+            classFiles = walked.filter(Files::isRegularFile)
+                    .collect(Collectors.toMap(path -> classesDir.relativize(path).toString().replace(File.separatorChar, '/'),
+                                              path -> path, (first, second) -> first, TreeMap::new));
+        }
+        try (ZipFile original = new ZipFile(dependency);
+             JarOutputStream output = new JarOutputStream(Files.newOutputStream(jarOut.toPath()))) {
+            for (Map.Entry<String, Path> classFile : classFiles.entrySet()) {
+                putEntry(output, classFile.getKey());
+                Files.copy(classFile.getValue(), output);
+                output.closeEntry();
+            }
+            final Map<String, ZipEntry> toCopy = original.stream()
+                    .filter(entry -> !entry.isDirectory() && !classFiles.containsKey(entry.getName())
+                            && (isResource(entry.getName()) || isClassWithoutSource(entry.getName(), original)))
+                    .collect(Collectors.toMap(ZipEntry::getName, entry -> entry, (first, second) -> first, TreeMap::new));
+            for (ZipEntry copied : toCopy.values()) {
+                putEntry(output, copied.getName());
+                try (InputStream input = original.getInputStream(copied)) {
+                    copy(input, output);
+                }
+                output.closeEntry();
+            }
+        }
+    }
+
+    private static boolean isResource(String name) {
+        final String upperCaseName = name.toUpperCase();
+        return !name.endsWith(".class") && !name.endsWith(".java")
+                && !upperCaseName.equals("META-INF/MANIFEST.MF")
+                && !(upperCaseName.startsWith("META-INF/") && (upperCaseName.endsWith(".SF") || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".DSA")));
+    }
+
+    /**
+     * Returns <code>true</code> for the class files of the given jar whose source is not inside it. The ones with a source,
+     * but not compiled, have been stripped as <code>@GwtIncompatible</code>
+     * @param name
+     * @param original
+     * @return
+     */
+    private static boolean isClassWithoutSource(String name, ZipFile original) {
+        if (!name.endsWith(".class")) {
+            return false;
+        }
+        // nested classes are declared in the source of the outermost one
+        final int nestedStart = name.indexOf('$', name.lastIndexOf('/') + 1);
+        final String sourceName = (nestedStart < 0 ? name.substring(0, name.length() - ".class".length()) : name.substring(0, nestedStart)) + ".java";
+        return original.getEntry(sourceName) == null;
+    }
+
+    private static void putEntry(JarOutputStream output, String name) throws IOException {
+        final JarEntry entry = new JarEntry(name);
+        entry.setTime(ENTRY_TIME);
+        output.putNextEntry(entry);
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+}
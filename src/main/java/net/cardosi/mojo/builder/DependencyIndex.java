@@ -0,0 +1,273 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import net.cardosi.mojo.tools.ClassFileReader;
+
+/**
+ * Persistent, type-level, dependency index built out of javac output.
+ * <p>
+ * For each compiled source file it stores the types it declares, the types its bytecode references, their supertypes
+ * and a fingerprint of their API, so that it is possible to know if a recompilation changed the API of a source and,
+ * in that case, to retrieve only the sources that actually depend on it.
+ * <p>
+ * It also stores the sources generated by annotation processors out of each source, so that the ones not generated
+ * anymore can be found.
+ * <p>
+ * Sources are identified by their absolute, normalized, path; types by their binary name.
+ */
+public class DependencyIndex implements Serializable {
+
+    private static final long serialVersionUID = 3L;
+
+    private final static Logger LOGGER = Logger.getLogger(DependencyIndex.class.getName());
+
+    private final Map<String, Set<String>> declaredTypes = new HashMap<>();
+    private final Map<String, Set<String>> referencedTypes = new HashMap<>();
+    private final Map<String, Set<String>> superTypes = new HashMap<>();
+    private final Map<String, String> apiFingerprints = new HashMap<>();
+    private final Set<String> constantsDeclaringSources = new HashSet<>();
+    private final Map<String, Set<String>> generatedSources = new HashMap<>();
+
+    /**
+     * Load the index stored in the given <code>File</code>, or return an empty one if it does not exists or is not readable
+     * @param indexFile
+     * @return
+     */
+    public static DependencyIndex load(File indexFile) {
+        if (indexFile.exists()) {
+            try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(indexFile))) {
+                return (DependencyIndex) input.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                LOGGER.warning("Ignoring unreadable dependency index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        return new DependencyIndex();
+    }
+
+    /**
+     * Store the index to the given <code>File</code>, replacing it atomically, so that it is never left half-written
+     * (e.g. if the process is killed while saving)
+     * @param indexFile
+     * @throws IOException
+     */
+    public void save(File indexFile) throws IOException {
+        final File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getAbsoluteFile().getParentFile());
+        try {
+            try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(tempFile))) {
+                output.writeObject(this);
+            }
+            try {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    public boolean isEmpty() {
+        return declaredTypes.isEmpty();
+    }
+
+    public boolean contains(String sourcePath) {
+        return declaredTypes.containsKey(sourcePath);
+    }
+
+    /**
+     * Returns <code>true</code> if the given source declares compile-time constants, whose usages can not be tracked
+     * @param sourcePath
+     * @return
+     */
+    public boolean isDeclaringConstants(String sourcePath) {
+        return constantsDeclaringSources.contains(sourcePath);
+    }
+
+    /**
+     * Returns the paths of the indexed sources
+     */
+    public Set<String> getSourcePaths() {
+        return new HashSet<>(declaredTypes.keySet());
+    }
+
+    public Set<String> getDeclaredTypes(String sourcePath) {
+        return declaredTypes.getOrDefault(sourcePath, Collections.emptySet());
+    }
+
+    /**
+     * Replace the entries of the given sources with the ones read from their freshly compiled classes
+     * @param compiledTypes the binary names of the types generated by each compiled source
+     * @param classFileLocator function to retrieve the class file of a given binary name
+     * @return the sources whose API changed (or that were not indexed before)
+     */
+    public Set<String> update(Map<String, Set<String>> compiledTypes, Function<String, File> classFileLocator) {
+        return update(compiledTypes, (ClassFileLoader) type -> ClassFileReader.read(classFileLocator.apply(type).toPath()));
+    }
+
+    /**
+     * Replace the entries of the given sources with the ones read from their freshly compiled classes
+     * @param compiledTypes the binary names of the types generated by each compiled source
+     * @param classFileLoader reads the class file of a given binary name
+     * @return the sources whose API changed (or that were not indexed before)
+     */
+    public Set<String> update(Map<String, Set<String>> compiledTypes, ClassFileLoader classFileLoader) {
+        final Set<String> toReturn = new HashSet<>();
+        compiledTypes.forEach((sourcePath, types) -> {
+            final String previousApiFingerprint = apiFingerprints.get(sourcePath);
+            remove(sourcePath);
+            Set<String> references = new HashSet<>();
+            Set<String> supers = new HashSet<>();
+            // sorted, so that the fingerprint of the source does not depend on the compilation order
+            Map<String, String> typeFingerprints = new TreeMap<>();
+            for (String type : types) {
+                try {
+                    ClassFileReader classFileReader = classFileLoader.load(type);
+                    references.addAll(classFileReader.getReferencedTypes());
+                    supers.addAll(classFileReader.getSuperTypes());
+                    typeFingerprints.put(type, classFileReader.getApiFingerprint());
+                    if (classFileReader.isDeclaringConstants()) {
+                        constantsDeclaringSources.add(sourcePath);
+                    }
+                } catch (IOException e) {
+                    // we can't know who depends on this source, so treat it as the worst case
+                    LOGGER.warning("Failed to read class file of " + type + ": " + e.getMessage());
+                    constantsDeclaringSources.add(sourcePath);
+                    typeFingerprints.put(type, "");
+                }
+            }
+            references.removeAll(types);
+            supers.removeAll(types);
+            final String apiFingerprint = typeFingerprints.toString();
+            declaredTypes.put(sourcePath, new HashSet<>(types));
+            referencedTypes.put(sourcePath, references);
+            superTypes.put(sourcePath, supers);
+            apiFingerprints.put(sourcePath, apiFingerprint);
+            if (!apiFingerprint.equals(previousApiFingerprint)) {
+                toReturn.add(sourcePath);
+            }
+        });
+        return toReturn;
+    }
+
+    /**
+     * Remove all the entries of the given source
+     * @param sourcePath
+     */
+    public void remove(String sourcePath) {
+        declaredTypes.remove(sourcePath);
+        referencedTypes.remove(sourcePath);
+        superTypes.remove(sourcePath);
+        apiFingerprints.remove(sourcePath);
+        constantsDeclaringSources.remove(sourcePath);
+    }
+
+    /**
+     * Returns the sources the given generated ones were generated out of
+     * @param generatedSources
+     * @return
+     */
+    public Set<String> getOriginatingSources(Collection<String> generatedSources) {
+        return this.generatedSources.entrySet().stream()
+                .filter(entry -> entry.getValue().stream().anyMatch(generatedSources::contains))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns <code>true</code> if annotation processors generated sources out of the given one
+     * @param sourcePath
+     * @return
+     */
+    public boolean isGeneratingSources(String sourcePath) {
+        return generatedSources.containsKey(sourcePath);
+    }
+
+    /**
+     * Replace the generated sources of the given, just compiled (or deleted), sources with the given ones
+     * @param compiledSources
+     * @param originatingSources the originating sources of each source generated by the compilation
+     * @return the previously generated sources that are not generated anymore, by any source
+     */
+    public Set<String> updateGeneratedSources(Collection<String> compiledSources, Map<String, Set<String>> originatingSources) {
+        final Set<String> toReturn = new HashSet<>();
+        for (String compiledSource : compiledSources) {
+            final Set<String> previouslyGenerated = generatedSources.remove(compiledSource);
+            if (previouslyGenerated != null) {
+                toReturn.addAll(previouslyGenerated);
+            }
+        }
+        originatingSources.forEach((generatedSource, sources) -> sources.forEach(source -> generatedSources.computeIfAbsent(source, k -> new HashSet<>()).add(generatedSource)));
+        toReturn.removeAll(originatingSources.keySet());
+        // still generated by sources not compiled this time
+        generatedSources.values().forEach(toReturn::removeAll);
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the sources to recompile because the API of the given ones changed, i.e. the sources referencing
+     * their types. Since inherited members are part of the API of a type, subtypes of the changed ones are considered
+     * changed, too (transitively)
+     * @param apiChangedSources
+     * @return the dependent sources, the given ones excluded
+     */
+    public Set<String> getDependentSources(Collection<String> apiChangedSources) {
+        final Set<String> changedSources = new HashSet<>(apiChangedSources);
+        final Set<String> changedTypes = new HashSet<>();
+        final Deque<String> toVisit = new ArrayDeque<>(changedSources);
+        while (!toVisit.isEmpty()) {
+            changedTypes.addAll(getDeclaredTypes(toVisit.pop()));
+            superTypes.forEach((sourcePath, supers) -> {
+                if (!changedSources.contains(sourcePath) && supers.stream().anyMatch(changedTypes::contains)) {
+                    changedSources.add(sourcePath);
+                    toVisit.push(sourcePath);
+                }
+            });
+        }
+        final Map<String, Set<String>> referencingSources = getReferencingSources();
+        final Set<String> toReturn = new HashSet<>();
+        changedTypes.forEach(type -> toReturn.addAll(referencingSources.getOrDefault(type, Collections.emptySet())));
+        toReturn.removeAll(apiChangedSources);
+        return toReturn;
+    }
+
+    /**
+     * Returns the sources referencing each type
+     * @return
+     */
+    private Map<String, Set<String>> getReferencingSources() {
+        final Map<String, Set<String>> toReturn = new HashMap<>();
+        referencedTypes.forEach((sourcePath, types) -> types.forEach(type -> toReturn.computeIfAbsent(type, k -> new HashSet<>()).add(sourcePath)));
+        return toReturn;
+    }
+
+    /**
+     * Reads the class file of a binary name, wherever it is
+     */
+    @FunctionalInterface
+    public interface ClassFileLoader {
+
+        ClassFileReader load(String binaryName) throws IOException;
+    }
+}
@@ -0,0 +1,102 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Hashes files with a fast, non cryptographic, digest, that is good enough to identify their content in cache lookups.
+ * <p>
+ * Big files (i.e. jars) are memory mapped instead of being copied through a stream, and many files may be hashed
+ * concurrently, memoizing the results in the {@link JarIndex} so that unchanged files are not read again in following runs.
+ */
+public class FileHasher {
+
+    /**
+     * Files at least this big are memory mapped
+     */
+    static final long MAPPED_THRESHOLD = 256 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private FileHasher() {
+    }
+
+    /**
+     * Returns the hash of the content of the given file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static String hash(Path file) throws IOException {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size >= MAPPED_THRESHOLD) {
+                // a single mapping can not be bigger than Integer.MAX_VALUE
+                for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                    hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+                }
+            } else {
+                final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    hasher.putBytes(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Concurrently hash all the given files (directories are ignored) with the given <code>ExecutorService</code>, storing
+     * the hashes in the given <code>JarIndex</code>
+     * @param jarIndex
+     * @param files
+     * @param executorService
+     * @throws IOException
+     */
+    public static void hashAll(JarIndex jarIndex, Collection<File> files, ExecutorService executorService) throws IOException {
+        final Set<File> toHash = new LinkedHashSet<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                toHash.add(file.getAbsoluteFile());
+            }
+        }
+        final List<Future<String>> jobs = new ArrayList<>();
+        for (File file : toHash) {
+            jobs.add(executorService.submit(() -> jarIndex.getHash(file)));
+        }
+        for (Future<String> job : jobs) {
+            try {
+                job.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while hashing", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Persistent snapshot of the source files as they were when last successfully compiled.
+ * <p>
+ * For each file it stores size, modification time and content hash: a file is reported as changed only if its content
+ * differs from the snapshot one, and the content is hashed only if size or modification time moved, so that touched but
+ * otherwise unchanged files (e.g. after a <code>git checkout</code> or a formatter run) are not recompiled.
+ * <p>
+ * The state read by {@link #isChanged(Path)} is kept apart, and becomes part of the snapshot only when
+ * {@link #commit(Collection)} is invoked for that file, i.e. after it has been successfully compiled.
+ * <p>
+ * Files are identified by their absolute, normalized, path.
+ */
+public class FileSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final static Logger LOGGER = Logger.getLogger(FileSnapshot.class.getName());
+
+    private final Map<String, Entry> committed = new HashMap<>();
+    // read while checking changes, not compiled yet
+    private transient Map<String, Entry> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Load the snapshot stored in the given <code>File</code>, or return an empty one if it does not exists or is not readable
+     * @param snapshotFile
+     * @return
+     */
+    public static FileSnapshot load(File snapshotFile) {
+        if (snapshotFile.exists()) {
+            try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(snapshotFile))) {
+                return (FileSnapshot) input.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                LOGGER.warning("Ignoring unreadable file snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+        return new FileSnapshot();
+    }
+
+    /**
+     * Store the snapshot to the given <code>File</code>, replacing it atomically, so that it is never left half-written
+     * (e.g. if the process is killed while saving)
+     * @param snapshotFile
+     * @throws IOException
+     */
+    public synchronized void save(File snapshotFile) throws IOException {
+        final File tempFile = File.createTempFile(snapshotFile.getName(), ".tmp", snapshotFile.getAbsoluteFile().getParentFile());
+        try {
+            try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(tempFile))) {
+                output.writeObject(this);
+            }
+            try {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns the paths of the files in the snapshot
+     */
+    public synchronized Set<String> getPaths() {
+        return new HashSet<>(committed.keySet());
+    }
+
+    /**
+     * Returns <code>true</code> if the content of the given file differs from the one in the snapshot (or if it is not in the snapshot at all).
+     * A file whose size and modification time did not move is considered unchanged without reading it
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public boolean isChanged(Path file) throws IOException {
+        final String key = file.toAbsolutePath().normalize().toString();
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final long size = attributes.size();
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final Entry previous;
+        synchronized (this) {
+            previous = committed.get(key);
+        }
+        if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+            return false;
+        }
+        Entry pendingEntry = pending.get(key);
+        if (pendingEntry == null || pendingEntry.size != size || pendingEntry.lastModified != lastModified) {
+            pendingEntry = new Entry(size, lastModified, FileHasher.hash(file));
+            pending.put(key, pendingEntry);
+        }
+        if (previous != null && previous.hash.equals(pendingEntry.hash)) {
+            // only touched: remember the new attributes, to avoid hashing it again
+            synchronized (this) {
+                committed.put(key, pendingEntry);
+            }
+            pending.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Move the state read by {@link #isChanged(Path)} for the given files inside the snapshot
+     * @param sourcePaths
+     */
+    public synchronized void commit(Collection<String> sourcePaths) {
+        for (String sourcePath : sourcePaths) {
+            final Entry entry = pending.remove(sourcePath);
+            if (entry != null) {
+                committed.put(sourcePath, entry);
+            }
+        }
+    }
+
+    /**
+     * Remove the given file from the snapshot
+     * @param sourcePath
+     */
+    public synchronized void remove(String sourcePath) {
+        committed.remove(sourcePath);
+        pending.remove(sourcePath);
+    }
+
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        pending = new ConcurrentHashMap<>();
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = Objects.requireNonNull(hash);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Persistent index of the already seen jars.
+ * <p>
+ * For each jar, identified by its absolute path, size and modification time, it stores its hash and, for dependencies, if
+ * it has no sources to transpile, so that unchanged jars are neither hashed nor preprocessed again.
+ * <p>
+ * Hashes are computed by {@link FileHasher}.
+ */
+public class JarIndex implements Serializable {
+
+    private static final long serialVersionUID = 3L;
+
+    private final static Logger LOGGER = Logger.getLogger(JarIndex.class.getName());
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Load the index stored in the given <code>File</code>, or return an empty one if it does not exists or is not readable
+     * @param indexFile
+     * @return
+     */
+    public static JarIndex load(File indexFile) {
+        if (indexFile.exists()) {
+            try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(indexFile))) {
+                return (JarIndex) input.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                LOGGER.warning("Ignoring unreadable jar index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        return new JarIndex();
+    }
+
+    /**
+     * Store the index to the given <code>File</code>, replacing it atomically, since concurrent builds may share it
+     * @param indexFile
+     * @throws IOException
+     */
+    public synchronized void save(File indexFile) throws IOException {
+        final File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getAbsoluteFile().getParentFile());
+        try {
+            try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(tempFile))) {
+                output.writeObject(this);
+            }
+            try {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns the hash of the given jar, computing it only if the jar is not indexed or its size or modification time changed
+     * @param jar
+     * @return
+     * @throws IOException
+     */
+    public String getHash(File jar) throws IOException {
+        final Entry indexed = get(jar);
+        if (indexed != null) {
+            return indexed.hash;
+        }
+        final long size = jar.length();
+        final long lastModified = jar.lastModified();
+        final String toReturn = FileHasher.hash(jar.toPath());
+        synchronized (this) {
+            entries.put(jar.getAbsolutePath(), new Entry(size, lastModified, toReturn));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns <code>true</code> if the given, unchanged, jar is known to have no sources to transpile
+     * @param jar
+     * @return
+     */
+    public boolean isWithoutSources(File jar) {
+        final Entry indexed = get(jar);
+        return indexed != null && indexed.withoutSources;
+    }
+
+    /**
+     * Store that the given jar has no sources to transpile
+     * @param jar
+     * @throws IOException
+     */
+    public void setWithoutSources(File jar) throws IOException {
+        getHash(jar);
+        synchronized (this) {
+            entries.get(jar.getAbsolutePath()).withoutSources = true;
+        }
+    }
+
+    private synchronized Entry get(File jar) {
+        final Entry toReturn = entries.get(jar.getAbsolutePath());
+        if (toReturn == null || toReturn.size != jar.length() || toReturn.lastModified != jar.lastModified()) {
+            return null;
+        }
+        return toReturn;
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private boolean withoutSources;
+
+        private Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package net.cardosi.mojo.builder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.j2cl.frontend.FrontendUtils;
 import net.cardosi.mojo.options.Gwt3Options;
@@ -28,42 +40,191 @@ import org.apache.maven.project.MavenProject;
  * think I got it right to pick up generated classes changes too...
  * <p>
  * Not so good:
- * o Not correctly recompiling classes that require it based on dependencies
  * o Not at all convinced my javac wiring is correct
- * o Polling for changes
+ * <p>
+ * Changes are detected through file system events (see {@link SourceDirWatcher}), falling back to polling
+ * when those are disabled or not available. Changes detected while compiling cancel the running compilation (at the
+ * next phase boundary), that is restarted with the merged changes.
  */
 public class ListeningCompiler {
 
     private final static Logger LOGGER = Logger.getLogger(ListeningCompiler.class.getName());
 
-    public static void run(Gwt3Options options, List<File> orderedClasspath, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
+    public static void run(Gwt3Options options, List<File> orderedClasspath, Map<File, Set<File>> dependencyGraph, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
         LOGGER.setLevel(Level.INFO);
         LOGGER.info("Setup SingleCompiler");
-        SingleCompiler.setup(options, orderedClasspath, targetPath, baseDirProjectMap);
+        SingleCompiler.setup(options, orderedClasspath, dependencyGraph, targetPath, baseDirProjectMap);
         FileTime lastModified = FileTime.fromMillis(0);
+        // created before the first scan, so that nothing modified in the meantime gets lost
+        SourceDirWatcher sourceDirWatcher = getSourceDirWatcher(options);
+        boolean fullScan = true;
+        // a single thread, so that the listening loop may detect changes while a compile cycle is running
+        ExecutorService compileExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread toReturn = new Thread(runnable, "j2cl-compile");
+            toReturn.setDaemon(true);
+            return toReturn;
+        });
+        // changes detected while running a compile cycle, to be compiled in the next one
+        final Map<String, FrontendUtils.FileInfo> pendingJavaFiles = new LinkedHashMap<>();
         LOGGER.info("Begin listening");
         while (true) {
-            // currently polling for changes.
-            // block until changes instead? easy to replace with filewatcher, just watch out for java9/osx issues...
             long pollStarted = System.currentTimeMillis();
             FileTime newerThan = lastModified;
-            List<FrontendUtils.FileInfo> modifiedJavaFiles = SingleCompiler.getModifiedJavaFiles(newerThan);
-            long pollTime = System.currentTimeMillis() - pollStarted;
             // don't replace this until the loop finishes successfully, so we know the last time we started a successful preCompile
             FileTime nextModifiedIfSuccessful = FileTime.fromMillis(System.currentTimeMillis());
+            final Map<String, FrontendUtils.FileInfo> modifiedJavaFiles = new LinkedHashMap<>(pendingJavaFiles);
+            pendingJavaFiles.clear();
+            if (!modifiedJavaFiles.isEmpty()) {
+                // already got some changes from the previous cycle
+            } else if (sourceDirWatcher == null || fullScan) {
+                // polling for changes (with file watcher, only at first round or if some event has been lost)
+                addAll(modifiedJavaFiles, SingleCompiler.getModifiedJavaFiles(newerThan));
+                fullScan = false;
+            } else {
+                // block until changes
+                SourceDirWatcher.Changes changes = sourceDirWatcher.take();
+                pollStarted = System.currentTimeMillis();
+                if (changes.isOverflow()) {
+                    LOGGER.warning("File system events lost, scanning source directories");
+                    fullScan = true;
+                    continue;
+                }
+                addAll(modifiedJavaFiles, changes);
+            }
+            long pollTime = System.currentTimeMillis() - pollStarted;
             if (modifiedJavaFiles.isEmpty()) {
-                Thread.sleep(100);
+                if (sourceDirWatcher == null) {
+                    Thread.sleep(100);
+                }
                 continue;
             }
-            try {
-                SingleCompiler.preCompile(modifiedJavaFiles, targetPath);
+            // wait for the end of the burst of changes, if any
+            long debounceStarted = System.currentTimeMillis();
+            while (true) {
+                long toWait = Math.min(options.getChangesQuietPeriod(), debounceStarted + options.getChangesMaxWait() - System.currentTimeMillis());
+                if (toWait <= 0) {
+                    break;
+                }
+                boolean changed;
+                if (sourceDirWatcher == null) {
+                    Thread.sleep(toWait);
+                    nextModifiedIfSuccessful = FileTime.fromMillis(System.currentTimeMillis());
+                    changed = addAll(modifiedJavaFiles, SingleCompiler.getModifiedJavaFiles(newerThan));
+                } else {
+                    changed = waitForChanges(sourceDirWatcher, toWait, newerThan, modifiedJavaFiles);
+                }
+                if (!changed) {
+                    break;
+                }
+            }
+            long debounceTime = System.currentTimeMillis() - debounceStarted;
+            long compileStarted = System.currentTimeMillis();
+            SingleCompiler.clearCancelRequest();
+            Future<?> compileCycle = compileExecutor.submit(() -> {
+                SingleCompiler.preCompile(new ArrayList<>(modifiedJavaFiles.values()), targetPath);
                 SingleCompiler.closure();
-            } catch (Exception e) {
-                LOGGER.severe(e.getMessage());
+                return null;
+            });
+            // keep listening while compiling: newer changes cancel the running cycle, that restarts with the merged changes
+            final FileTime changedDuringCycleSince = nextModifiedIfSuccessful;
+            boolean cancelled = false;
+            while (!compileCycle.isDone()) {
+                if (waitForChanges(sourceDirWatcher, 100, changedDuringCycleSince, pendingJavaFiles) && !cancelled) {
+                    LOGGER.info("New changes detected, cancelling current compilation");
+                    SingleCompiler.requestCancel();
+                    cancelled = true;
+                }
             }
-            LOGGER.info("Recompile of " + modifiedJavaFiles.size() + " source classes finished in " + (System.currentTimeMillis() - nextModifiedIfSuccessful.to(TimeUnit.MILLISECONDS)) + "ms");
-            LOGGER.info("poll: " + pollTime + "millis");
+            try {
+                compileCycle.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    // restart from the merged changes, without moving lastModified
+                    pendingJavaFiles.putAll(modifiedJavaFiles);
+                    LOGGER.info("Recompile of " + modifiedJavaFiles.size() + " source classes cancelled after " + (System.currentTimeMillis() - compileStarted) + "ms");
+                    continue;
+                }
+                LOGGER.severe(e.getCause().getMessage());
+            }
+            LOGGER.info("Recompile of " + modifiedJavaFiles.size() + " source classes finished in " + (System.currentTimeMillis() - compileStarted) + "ms");
+            LOGGER.info("poll: " + pollTime + "millis, debounce: " + debounceTime + "millis");
             lastModified = nextModifiedIfSuccessful;
         }
     }
+
+    /**
+     * Waits at most the given time for changes, adding them to the given <code>Map</code>
+     * @param sourceDirWatcher the <code>SourceDirWatcher</code> to use, or <code>null</code> to scan source directories
+     * @param timeout milliseconds
+     * @param newerThan when scanning, the modification time after which files are considered changed
+     * @param toPopulate
+     * @return <code>true</code> if some change has been detected
+     * @throws Exception
+     */
+    private static boolean waitForChanges(SourceDirWatcher sourceDirWatcher, long timeout, FileTime newerThan, Map<String, FrontendUtils.FileInfo> toPopulate) throws Exception {
+        if (sourceDirWatcher == null) {
+            Thread.sleep(timeout);
+            return addAll(toPopulate, SingleCompiler.getModifiedJavaFiles(newerThan));
+        }
+        SourceDirWatcher.Changes changes = sourceDirWatcher.poll(timeout, TimeUnit.MILLISECONDS);
+        boolean toReturn = false;
+        if (changes.isOverflow()) {
+            toReturn = addAll(toPopulate, SingleCompiler.getModifiedJavaFiles(newerThan));
+        }
+        return addAll(toPopulate, changes) || toReturn;
+    }
+
+    /**
+     * Add the given files to the given <code>Map</code>, keyed by path
+     * @param toPopulate
+     * @param modifiedJavaFiles
+     * @return <code>true</code> if any of the given files was not already present
+     */
+    private static boolean addAll(Map<String, FrontendUtils.FileInfo> toPopulate, List<FrontendUtils.FileInfo> modifiedJavaFiles) {
+        boolean toReturn = false;
+        for (FrontendUtils.FileInfo modifiedJavaFile : modifiedJavaFiles) {
+            toReturn |= toPopulate.putIfAbsent(modifiedJavaFile.sourcePath(), modifiedJavaFile) == null;
+        }
+        return toReturn;
+    }
+
+    /**
+     * Add the actually changed, or deleted, files of the given <code>SourceDirWatcher.Changes</code> to the given <code>Map</code>,
+     * keyed by path, mapped as the scanned ones (see {@link SingleCompiler#toChangedSources(List)})
+     * @param toPopulate
+     * @param changes
+     * @return <code>true</code> if any of the files changed
+     */
+    private static boolean addAll(Map<String, FrontendUtils.FileInfo> toPopulate, SourceDirWatcher.Changes changes) {
+        List<FrontendUtils.FileInfo> changedFiles = SingleCompiler.retainContentChanged(Stream.concat(changes.getModifiedSources().stream(), changes.getDeletedSources().stream())
+                .distinct()
+                .filter(path -> Files.exists(path))
+                .map(path -> FrontendUtils.FileInfo.create(path.toString(), path.toString()))
+                .collect(Collectors.toList()));
+        // deleted files are kept, too, to trigger the purge of their outputs
+        changes.getDeletedSources().stream()
+                .filter(path -> !Files.exists(path))
+                .forEach(path -> changedFiles.add(FrontendUtils.FileInfo.create(path.toString(), path.toString())));
+        final List<FrontendUtils.FileInfo> changedJavaFiles = SingleCompiler.toChangedSources(changedFiles);
+        addAll(toPopulate, changedJavaFiles);
+        return !changedJavaFiles.isEmpty();
+    }
+
+    /**
+     * Returns a <code>SourceDirWatcher</code> on the source directories, or <code>null</code> if polling should be used
+     * @param options
+     * @return
+     */
+    private static SourceDirWatcher getSourceDirWatcher(Gwt3Options options) {
+        if (!options.isUseFileWatcher()) {
+            LOGGER.info("Polling for changes");
+            return null;
+        }
+        try {
+            return new SourceDirWatcher(options.getSourceDir());
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warning("Failed to watch source directories, falling back to polling: " + e.getMessage());
+            return null;
+        }
+    }
 }
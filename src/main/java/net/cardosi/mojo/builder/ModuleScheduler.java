@@ -0,0 +1,228 @@
+package net.cardosi.mojo.builder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.j2cl.frontend.FrontendUtils;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Splits sources per module, i.e. per <code>MavenProject</code>, and compiles modules in dependency order.
+ * <p>
+ * All the compile source roots of a project belong to the same module, since sources in different roots of the same
+ * project may reference each other. Sources outside any root (e.g. generated ones) are grouped under a <code>null</code>
+ * module, that depends on all the others.
+ */
+class ModuleScheduler {
+
+    // normalized absolute compile source roots, by project
+    private final Map<MavenProject, List<Path>> sourceRoots = new LinkedHashMap<>();
+    // the projects each project depends on, directly or transitively
+    private final Map<MavenProject, Set<MavenProject>> upstreamProjects = new HashMap<>();
+
+    /**
+     * Dependencies between the given projects are read from the declared ones, matched by groupId:artifactId, since
+     * resolved artifacts are not available for the reactor projects whose mojo did not require dependency resolution
+     * @param projects
+     */
+    ModuleScheduler(Collection<MavenProject> projects) {
+        final Map<String, MavenProject> projectsByKey = new HashMap<>();
+        for (MavenProject project : projects) {
+            final List<Path> projectRoots = sourceRoots.computeIfAbsent(project, key -> new ArrayList<>());
+            project.getCompileSourceRoots().forEach(sourceRoot -> projectRoots.add(toPath(sourceRoot)));
+            projectsByKey.put(project.getGroupId() + ":" + project.getArtifactId(), project);
+        }
+        final Map<MavenProject, Set<MavenProject>> directUpstreamProjects = new HashMap<>();
+        for (MavenProject project : sourceRoots.keySet()) {
+            directUpstreamProjects.put(project, project.getDependencies().stream()
+                    .map(dependency -> projectsByKey.get(dependency.getGroupId() + ":" + dependency.getArtifactId()))
+                    .filter(upstreamProject -> upstreamProject != null && !upstreamProject.equals(project))
+                    .collect(Collectors.toSet()));
+        }
+        for (MavenProject project : sourceRoots.keySet()) {
+            final Set<MavenProject> toPopulate = new HashSet<>();
+            populateUpstreamProjects(toPopulate, project, directUpstreamProjects);
+            toPopulate.remove(project);
+            upstreamProjects.put(project, toPopulate);
+        }
+    }
+
+    /**
+     * Group the given sources by the module they belong to; the ones outside modules are grouped under <code>null</code>
+     * @param sources
+     * @return
+     */
+    Map<MavenProject, List<FrontendUtils.FileInfo>> groupByModule(List<FrontendUtils.FileInfo> sources) {
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> toReturn = new LinkedHashMap<>();
+        for (FrontendUtils.FileInfo source : sources) {
+            toReturn.computeIfAbsent(getModule(source), key -> new ArrayList<>()).add(source);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns the module the given source belongs to, i.e. the one with the innermost root containing it (for nested
+     * modules), or <code>null</code> if it is outside modules
+     * @param source
+     * @return
+     */
+    MavenProject getModule(FrontendUtils.FileInfo source) {
+        final Path sourcePath = toPath(source.sourcePath());
+        MavenProject toReturn = null;
+        int toReturnNameCount = -1;
+        for (Map.Entry<MavenProject, List<Path>> projectRoots : sourceRoots.entrySet()) {
+            for (Path sourceRoot : projectRoots.getValue()) {
+                if (sourcePath.startsWith(sourceRoot) && sourceRoot.getNameCount() > toReturnNameCount) {
+                    toReturn = projectRoots.getKey();
+                    toReturnNameCount = sourceRoot.getNameCount();
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns all the java sources of the given module
+     * @param module
+     * @return
+     */
+    List<FrontendUtils.FileInfo> getSources(MavenProject module) {
+        final List<FrontendUtils.FileInfo> toReturn = new ArrayList<>();
+        for (Path sourceRoot : sourceRoots.getOrDefault(module, Collections.emptyList())) {
+            if (!Files.isDirectory(sourceRoot)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.find(sourceRoot, Integer.MAX_VALUE, (path, attrs) -> attrs.isRegularFile() && path.toString().endsWith(".java"))) {
+                paths.forEach(path -> toReturn.add(FrontendUtils.FileInfo.create(path.toString(), path.toString())));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns the modules of the given sources that are not compiled whole, i.e. that have sources not among the compiled ones
+     * @param sources
+     * @param compiledSources
+     * @return
+     */
+    Set<MavenProject> getPartiallyCompiledModules(Collection<FrontendUtils.FileInfo> sources, Collection<FrontendUtils.FileInfo> compiledSources) {
+        final Set<Path> compiledPaths = compiledSources.stream().map(source -> toPath(source.sourcePath())).collect(Collectors.toSet());
+        return sources.stream()
+                .map(this::getModule)
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(module -> getSources(module).stream().anyMatch(source -> !compiledPaths.contains(toPath(source.sourcePath()))))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the modules, among the given ones, the given module depends on: sources outside modules depend on all of them
+     * @param module
+     * @param modules
+     * @return
+     */
+    Set<MavenProject> getUpstreamModules(MavenProject module, Set<MavenProject> modules) {
+        final Set<MavenProject> toReturn = modules.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        toReturn.remove(module);
+        if (module != null) {
+            toReturn.retainAll(upstreamProjects.getOrDefault(module, Collections.emptySet()));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Compile the given sources, split per module. Modules are compiled concurrently, each one as soon as the modules it
+     * depends on have been compiled
+     * @param moduleSources the sources to compile, mapped by module
+     * @param threads the maximum number of modules compiled at the same time
+     * @param compileModule compiles the given sources of the given module, returning <code>false</code> on failure
+     * @return <code>false</code> if any module failed to compile; modules depending on it are not compiled
+     */
+    boolean compile(Map<MavenProject, List<FrontendUtils.FileInfo>> moduleSources, int threads, BiPredicate<MavenProject, List<FrontendUtils.FileInfo>> compileModule) {
+        if (moduleSources.size() == 1) {
+            final Map.Entry<MavenProject, List<FrontendUtils.FileInfo>> module = moduleSources.entrySet().iterator().next();
+            return compileModule.test(module.getKey(), module.getValue());
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, moduleSources.size())));
+        try {
+            final Map<MavenProject, CompletableFuture<Boolean>> jobs = new HashMap<>();
+            for (MavenProject module : moduleSources.keySet()) {
+                schedule(module, moduleSources, jobs, executorService, compileModule);
+            }
+            boolean toReturn = true;
+            for (CompletableFuture<Boolean> job : jobs.values()) {
+                toReturn &= job.join();
+            }
+            return toReturn;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedule the compilation of the given module after the ones of the modules it depends on, scheduling them first if needed
+     * @param module
+     * @param moduleSources
+     * @param jobs the scheduled compilations, mapped by module
+     * @param executorService
+     * @param compileModule
+     * @return the scheduled compilation: it does not compile anything, and returns <code>false</code>, if any of the
+     * modules it depends on failed to compile
+     */
+    private CompletableFuture<Boolean> schedule(MavenProject module, Map<MavenProject, List<FrontendUtils.FileInfo>> moduleSources, Map<MavenProject, CompletableFuture<Boolean>> jobs,
+                                                ExecutorService executorService, BiPredicate<MavenProject, List<FrontendUtils.FileInfo>> compileModule) {
+        CompletableFuture<Boolean> toReturn = jobs.get(module);
+        if (toReturn == null) {
+            final List<CompletableFuture<Boolean>> upstreamJobs = getUpstreamModules(module, moduleSources.keySet()).stream()
+                    .map(upstreamModule -> schedule(upstreamModule, moduleSources, jobs, executorService, compileModule))
+                    .collect(Collectors.toList());
+            toReturn = CompletableFuture.allOf(upstreamJobs.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> upstreamJobs.stream().allMatch(CompletableFuture::join)
+                            && compileModule.test(module, moduleSources.get(module)), executorService);
+            jobs.put(module, toReturn);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Add the projects the given one depends on, transitively, to the given <code>Set</code>
+     * @param toPopulate
+     * @param project
+     * @param directUpstreamProjects
+     */
+    private static void populateUpstreamProjects(Set<MavenProject> toPopulate, MavenProject project, Map<MavenProject, Set<MavenProject>> directUpstreamProjects) {
+        for (MavenProject upstreamProject : directUpstreamProjects.getOrDefault(project, Collections.emptySet())) {
+            if (toPopulate.add(upstreamProject)) {
+                populateUpstreamProjects(toPopulate, upstreamProject, directUpstreamProjects);
+            }
+        }
+    }
+
+    private static Path toPath(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,132 @@
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Cache of the preprocessed (i.e. without <code>@GwtIncompatible</code> members) content of source files, keyed by the
+ * hash of their original content, so that only new or changed sources have to go through the preprocessor.
+ * <p>
+ * The most recently used entries are kept in memory, up to a maximum size; all of them are also written to a directory,
+ * where the ones not used for {@link #MAX_DISK_AGE_DAYS} days are removed when the cache is created.
+ */
+public class PreprocessCache {
+
+    static final int MAX_DISK_AGE_DAYS = 7;
+
+    private final static Logger LOGGER = Logger.getLogger(PreprocessCache.class.getName());
+
+    private final Path directory;
+    private final String salt;
+    private final long maxMemorySize;
+    // access ordered, to evict the least recently used entries
+    private final Map<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+
+    /**
+     * @param directory the directory where entries are written
+     * @param salt identifies the preprocessor, whose output is cached
+     * @param maxMemorySize the maximum size, in bytes, of the entries kept in memory
+     * @throws IOException
+     */
+    public PreprocessCache(File directory, String salt, long maxMemorySize) throws IOException {
+        this.directory = Files.createDirectories(directory.toPath());
+        this.salt = salt;
+        this.maxMemorySize = maxMemorySize;
+        removeUnused();
+    }
+
+    /**
+     * Returns the key of the given original content
+     * @param content
+     * @return
+     */
+    public String getKey(byte[] content) {
+        return Hashing.murmur3_128().newHasher()
+                .putBytes(salt.getBytes(StandardCharsets.UTF_8))
+                .putBytes(content)
+                .hash().toString();
+    }
+
+    /**
+     * Returns the preprocessed content stored with the given key, or <code>null</code> if there is none
+     * @param key
+     * @return
+     * @throws IOException
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        byte[] toReturn = memory.get(key);
+        if (toReturn == null) {
+            final Path entry = directory.resolve(key);
+            if (!Files.isRegularFile(entry)) {
+                return null;
+            }
+            toReturn = Files.readAllBytes(entry);
+            entry.toFile().setLastModified(System.currentTimeMillis());
+            putInMemory(key, toReturn);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Store the given preprocessed content with the given key
+     * @param key
+     * @param processed
+     * @throws IOException
+     */
+    public synchronized void put(String key, byte[] processed) throws IOException {
+        putInMemory(key, processed);
+        final Path entry = directory.resolve(key);
+        if (Files.exists(entry)) {
+            return;
+        }
+        final Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temp, processed);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void putInMemory(String key, byte[] processed) {
+        final byte[] previous = memory.put(key, processed);
+        if (previous != null) {
+            memorySize -= previous.length;
+        }
+        memorySize += processed.length;
+        final Iterator<byte[]> eldest = memory.values().iterator();
+        while (memorySize > maxMemorySize && eldest.hasNext()) {
+            memorySize -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    private void removeUnused() {
+        final long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_DISK_AGE_DAYS);
+        final File[] entries = directory.toFile().listFiles(file -> file.lastModified() < oldest);
+        if (entries != null) {
+            for (File entry : entries) {
+                if (!entry.delete()) {
+                    LOGGER.fine("Failed to remove " + entry);
+                }
+            }
+        }
+    }
+}
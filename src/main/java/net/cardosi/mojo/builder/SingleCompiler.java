@@ -1,11 +1,13 @@
 package net.cardosi.mojo.builder;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -14,15 +16,32 @@ import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -40,7 +59,14 @@ import com.google.javascript.jscomp.CommandLineRunner;
 import com.google.javascript.jscomp.CompilationLevel;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.PersistentInputStore;
+import net.cardosi.mojo.cache.DirectoryJsZipCache;
+import net.cardosi.mojo.cache.HttpJsZipCache;
+import net.cardosi.mojo.cache.JsZipCache;
+import net.cardosi.mojo.cache.JsZipCacheCleaner;
+import net.cardosi.mojo.cache.JsZipCacheLock;
 import net.cardosi.mojo.options.Gwt3Options;
+import net.cardosi.mojo.tools.ClassOutputStore;
+import net.cardosi.mojo.tools.GwtIncompatiblePreprocessor;
 import net.cardosi.mojo.tools.Javac;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.project.MavenProject;
@@ -63,20 +89,55 @@ public class SingleCompiler {
 
     private final static Logger LOGGER = Logger.getLogger(SingleCompiler.class.getName());
 
+    private static final String DEPENDENCY_INDEX_FILE_NAME = "j2cl-dependency.index";
+    private static final String FILE_SNAPSHOT_FILE_NAME = "j2cl-file.snapshot";
+    private static final String BUILD_STATE_FILE_NAME = "j2cl-build.state";
+    private static final String JAR_INDEX_FILE_NAME = "j2cl-jar.index";
+    private static final String PREPROCESS_CACHE_DIR_NAME = "j2cl-preprocess.cache";
+    private static final long PREPROCESS_CACHE_MEMORY_SIZE = 64 * 1024 * 1024;
+    private static final Pattern TIMESTAMPED_DIR_PATTERN = Pattern.compile("\\d{13}-\\d+");
+    // suffixes of the files j2cl writes for each type, appended to its simple binary name
+    private static final List<String> J2CL_OUTPUT_SUFFIXES = Collections.unmodifiableList(Arrays.asList(".java.js", ".impl.java.js", ".native.js", ".js.map", ".java.js.map", ".impl.java.js.map"));
+
     private static Gwt3Options options;
     private static String intermediateJsPath;
+    // compiles the sources outside modules, and gives access to the compiled classes
     private static Javac javac;
+    // mapped by module
+    private static final Map<MavenProject, Javac> moduleJavacs = new ConcurrentHashMap<>();
+    private static List<File> javacClasspath;
+    private static ClassOutputStore classOutputStore;
     private static File generatedClassesPath;
     private static J2clTranspilerOptions.Builder baseJ2clArgs;
     private static List<String> baseClosureArgs;
     private static PersistentInputStore persistentInputStore;
     private static Map<String, MavenProject> baseDirProjectMap;
+    private static ModuleScheduler moduleScheduler;
     private static Set<FrontendUtils.FileInfo> toRecompile = new HashSet<>(); // Using Set to avoid duplication
+    // sources written by annotation processors during the current compilation
+    private static final Set<String> writtenGeneratedSources = new HashSet<>();
+    private static DependencyIndex dependencyIndex;
+    private static File dependencyIndexFile;
+    private static FileSnapshot fileSnapshot;
+    private static File fileSnapshotFile;
+    private static File buildStateFile;
+    private static String configurationFingerprint;
+    private static JarIndex jarIndex;
+    private static String toolsFingerprint;
+    private static JsZipCache sharedJsZipCache;
+    private static PreprocessCache preprocessCache;
+    // absolute paths of the dependencies mapped to the ones of their compiled bytecode jars
+    private static final Map<String, String> dependencyBytecode = new ConcurrentHashMap<>();
+    private static volatile boolean cancelRequested;
 
-    public static void run(Gwt3Options options, List<File> orderedClasspath, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
+    public static void run(Gwt3Options options, List<File> orderedClasspath, Map<File, Set<File>> dependencyGraph, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
         LOGGER.setLevel(Level.INFO);
         LOGGER.info("Setup");
-        setup(options, orderedClasspath, targetPath, baseDirProjectMap);
+        if (isUpToDate(options, orderedClasspath, targetPath)) {
+            LOGGER.info("Nothing changed since last successful build, skipping compilation");
+            return;
+        }
+        setup(options, orderedClasspath, dependencyGraph, targetPath, baseDirProjectMap);
         LOGGER.info("Do compilation");
         List<FrontendUtils.FileInfo> modifiedJavaFiles = getModifiedJavaFiles(FileTime.fromMillis(0));
         try {
@@ -86,14 +147,37 @@ public class SingleCompiler {
         }
     }
 
-    public static void setup(Gwt3Options options, List<File> orderedClasspath, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
+    public static void setup(Gwt3Options options, List<File> orderedClasspath, Map<File, Set<File>> dependencyGraph, File targetPath, Map<String, MavenProject> baseDirProjectMap) throws Exception {
         SingleCompiler.options = options;
         SingleCompiler.baseDirProjectMap = baseDirProjectMap;
+        moduleScheduler = new ModuleScheduler(new LinkedHashSet<>(baseDirProjectMap.values()));
         LOGGER.setLevel(Level.INFO);
         intermediateJsPath = options.getIntermediateJsPath();
         LOGGER.info("intermediate js from j2cl path " + intermediateJsPath);
-        generatedClassesPath = createTempDir(targetPath);//TODO allow this to be configurable
+        generatedClassesPath = options.getGeneratedClassesDir();
         LOGGER.info("generated source path " + generatedClassesPath);
+        deleteTimestampedGeneratedDirs(targetPath);
+        File jarIndexFile = new File(options.getJsZipCacheDir(), JAR_INDEX_FILE_NAME);
+        jarIndex = JarIndex.load(jarIndexFile);
+        toolsFingerprint = getToolsFingerprint(jarIndex);
+        // before any change to the classpath
+        configurationFingerprint = getConfigurationFingerprint(options, orderedClasspath, toolsFingerprint);
+        buildStateFile = new File(targetPath, BUILD_STATE_FILE_NAME);
+        dependencyIndexFile = new File(targetPath, DEPENDENCY_INDEX_FILE_NAME);
+        fileSnapshotFile = new File(targetPath, FILE_SNAPSHOT_FILE_NAME);
+        if (isValidBuildState(options, targetPath, configurationFingerprint)) {
+            dependencyIndex = DependencyIndex.load(dependencyIndexFile);
+            fileSnapshot = FileSnapshot.load(fileSnapshotFile);
+        } else {
+            LOGGER.info("No valid incremental state in " + targetPath + ", compiling everything");
+            dependencyIndex = new DependencyIndex();
+            fileSnapshot = new FileSnapshot();
+            // without the index, it is not known which of them are still generated
+            deleteDirectory(generatedClassesPath);
+        }
+        Files.createDirectories(generatedClassesPath.toPath());
+        LOGGER.info("dependency index " + dependencyIndexFile);
+        LOGGER.info("file snapshot " + fileSnapshotFile);
 
         File classesDirFile = options.getClassesDir();
         LOGGER.info("output class directory " + classesDirFile);
@@ -102,8 +186,6 @@ public class SingleCompiler {
             orderedClasspath.add(0, new File(path));
         }
 
-        javac = new Javac(generatedClassesPath, orderedClasspath, classesDirFile, options.getBootstrapClasspath());
-
         // put all j2clClasspath items into a list, we'll copy each time and add generated js
         baseJ2clArgs = J2clTranspilerOptions.newBuilder()
                 .setClasspaths(options.getBytecodeClasspath())
@@ -159,33 +241,74 @@ public class SingleCompiler {
         baseClosureArgs.add(intermediateJsPath + "/**/*.js");//precludes default package
 
         //pre-transpile all dependency sources to our cache dir, add those cached items to closure args
-        List<String> transpiledDependencies = progressivelyHandleDependencies(orderedClasspath, baseJ2clArgs, persistentInputStore, options.getBytecodeClasspath(), targetPath);
+        preprocessCache = new PreprocessCache(new File(targetPath, PREPROCESS_CACHE_DIR_NAME), toolsFingerprint, PREPROCESS_CACHE_MEMORY_SIZE);
+        sharedJsZipCache = getSharedJsZipCache(options.getSharedJsZipCache());
+        dependencyBytecode.clear();
+        List<String> transpiledDependencies = progressivelyHandleDependencies(orderedClasspath, dependencyGraph, baseJ2clArgs, persistentInputStore, options.getBytecodeClasspath(), targetPath);
         baseClosureArgs.addAll(transpiledDependencies);
+
+        // compile and transpile against the bytecode of the dependencies, consistent with their transpiled sources
+        baseJ2clArgs.setClasspaths(toBytecodeClasspath(options.getBytecodeClasspath()));
+        closeJavacs();
+        javacClasspath = toBytecodeClasspath(orderedClasspath.stream().map(File::getPath).collect(Collectors.toList())).stream()
+                .map(File::new)
+                .collect(Collectors.toList());
+        // shared by all the javacs, that compile to the same classes directory
+        classOutputStore = options.isInMemoryClassOutput() ? new ClassOutputStore(classesDirFile) : null;
+        javac = newJavac();
+        try {
+            jarIndex.save(jarIndexFile);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to save jar index: " + e.getMessage());
+        }
+        startJsZipCacheCleaning(transpiledDependencies);
     }
 
     public static void preCompile(List<FrontendUtils.FileInfo> modifiedJavaFiles, File tempDir) throws Exception {
-        // TODO Do that on a per-module basis
         LOGGER.setLevel(Level.INFO);
+        // the persisted state is not consistent until this compilation succeeds
+        Files.deleteIfExists(buildStateFile.toPath());
+        toRecompile.addAll(purgeDeletedSources());
+        toRecompile.addAll(purgeDeletedJsSources());
         final List<FrontendUtils.FileInfo> allSourcesToRecompile = getAllSourcesToRecompile(modifiedJavaFiles);
+        // compiling first, since it may add dependent sources to allSourcesToRecompile
+        compiling(allSourcesToRecompile);
         //
-        File processedZip = preProcessing(allSourcesToRecompile, tempDir);
+        addGeneratedSources(allSourcesToRecompile);
         //
-        compiling(allSourcesToRecompile);
+        checkCancelRequest(allSourcesToRecompile);
+        File processedDir = Files.createTempDirectory(tempDir.toPath(), "preprocessed").toFile();
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> processedJavaFiles = new LinkedHashMap<>();
+        for (Map.Entry<MavenProject, List<FrontendUtils.FileInfo>> moduleSources : moduleScheduler.groupByModule(allSourcesToRecompile).entrySet()) {
+            processedJavaFiles.put(moduleSources.getKey(), preProcessing(moduleSources.getValue(), processedDir));
+        }
         //
-        List<FrontendUtils.FileInfo> nativeSources = getNativeSources(allSourcesToRecompile);
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> nativeSources = moduleScheduler.groupByModule(getNativeSources(allSourcesToRecompile));
         //
+        checkCancelRequest(allSourcesToRecompile);
         copyJs(allSourcesToRecompile);
         //
-        addGeneratedSources(allSourcesToRecompile);
+        final Map<MavenProject, J2clTranspilerOptions.Builder> j2clArgs = new LinkedHashMap<>();
+        processedJavaFiles.forEach((module, moduleJavaFiles) -> j2clArgs.put(module, getBuilder(nativeSources.getOrDefault(module, Collections.emptyList()), moduleJavaFiles)));
+        //
+        try {
+            checkCancelRequest(allSourcesToRecompile);
+        } catch (CancellationException e) {
+            deleteDirectory(processedDir);
+            throw e;
+        }
+        transpile(j2clArgs, processedDir, allSourcesToRecompile);
         //
-        J2clTranspilerOptions.Builder j2clArgs = getBuilder(nativeSources, processedZip);
+        commitFileSnapshot(allSourcesToRecompile);
         //
-        transpile(j2clArgs, processedZip, allSourcesToRecompile);
+        Files.write(buildStateFile.toPath(), configurationFingerprint.getBytes(StandardCharsets.UTF_8));
     }
 
     public static void closure() throws IOException {
         // TODO Store/cache results of previous methods to reuse in next one
         // TODO Move to a specific method so that it is called only when the above are successfully run over the original modified sources and depndent ones
+        // sources have already been transpiled, so nothing has to be recompiled on cancellation
+        checkCancelRequest(Collections.emptyList());
         long jscompStarted = System.currentTimeMillis();
         if (!jscomp(baseClosureArgs, persistentInputStore, intermediateJsPath)) {
             return;
@@ -195,64 +318,502 @@ public class SingleCompiler {
     }
 
     /**
-     * This method returns the list of modified files since a given <code>FileTime</code>
+     * Request the running compilation (if any) to stop at the next phase boundary (preprocess, javac, transpile, copyJs, jscomp),
+     * throwing a <code>CancellationException</code>. Sources already involved in it will be recompiled at next <code>preCompile</code>
+     */
+    public static void requestCancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * Clear a previous cancel request: to be invoked before starting a new compilation
+     */
+    public static void clearCancelRequest() {
+        cancelRequested = false;
+    }
+
+    /**
+     * This method returns the list of modified files since a given <code>FileTime</code>, whose content actually changed
+     * since last successful compilation (see {@link FileSnapshot}), mapped by {@link #toChangedSources(List)}
      * @param newerThan
      * @return List of modified files, eventually empty
      * @throws IOException
      */
     protected static List<FrontendUtils.FileInfo> getModifiedJavaFiles(FileTime newerThan) throws IOException {
+        return toChangedSources(retainContentChanged(getTouchedSources(newerThan)));
+    }
+
+    /**
+     * Map the given changed (or deleted) files to the ones to pass to {@link #preCompile(List, File)}: a <code>.native.js</code>
+     * file is returned as its java source, that is transpiled together with it, while java and plain js files are returned
+     * as they are (the latter are not compiled, but copied at each compilation)
+     * @param changedFiles
+     * @return
+     */
+    protected static List<FrontendUtils.FileInfo> toChangedSources(List<FrontendUtils.FileInfo> changedFiles) {
+        final List<FrontendUtils.FileInfo> toReturn = new ArrayList<>();
+        for (FrontendUtils.FileInfo fileInfo : changedFiles) {
+            final Path path = Paths.get(fileInfo.sourcePath());
+            if (nativeJsMatcher.matches(path)) {
+                getNativeJavaSource(path).ifPresent(toReturn::add);
+            } else if (isSnapshotSource(path)) {
+                toReturn.add(fileInfo);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * This method returns the given files whose content changed since last successful compilation (see {@link FileSnapshot})
+     * @param javaFiles
+     * @return List of changed files, eventually empty
+     */
+    protected static List<FrontendUtils.FileInfo> retainContentChanged(List<FrontendUtils.FileInfo> javaFiles) {
+        return javaFiles.stream()
+                .filter(fileInfo -> {
+                    try {
+                        return fileSnapshot.isChanged(Paths.get(fileInfo.sourcePath()));
+                    } catch (IOException e) {
+                        LOGGER.warning("Failed to check " + fileInfo.sourcePath() + ", considering it changed: " + e.getMessage());
+                        return true;
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * This method returns the list of java and js files whose modification time is newer than a given <code>FileTime</code>
+     * @param newerThan
+     * @return List of touched files, eventually empty
+     * @throws IOException
+     */
+    private static List<FrontendUtils.FileInfo> getTouchedSources(FileTime newerThan) throws IOException {
         List<FrontendUtils.FileInfo> toReturn = new ArrayList<>();
         //this isn't quite right - should check for _at least one_ newer than lastModified, and if so, recompile all
         //newer than lastSuccess
-        //also, should look for .native.js too, but not collect them
         for (String dir : options.getSourceDir()) {
             Files.find(Paths.get(dir),
                        Integer.MAX_VALUE,
                        (filePath, fileAttr) -> !fileAttr.isDirectory()
                                && fileAttr.lastModifiedTime().compareTo(newerThan) > 0
-                               && javaMatcher.matches(filePath))
+                               && isSnapshotSource(filePath))
                     .forEach(file -> toReturn.add(FrontendUtils.FileInfo.create(file.toString(), file.toString())));
         }
         return toReturn;
     }
 
+    /**
+     * Returns <code>true</code> for the files whose state is kept in the <code>FileSnapshot</code>, i.e. java and js (native or not) sources
+     * @param path
+     * @return
+     */
+    private static boolean isSnapshotSource(Path path) {
+        return javaMatcher.matches(path) || jsMatcher.matches(path);
+    }
+
+    /**
+     * Returns the java source the given <code>.native.js</code> file belongs to, if it exists
+     * @param nativeJsPath
+     * @return
+     */
+    private static Optional<FrontendUtils.FileInfo> getNativeJavaSource(Path nativeJsPath) {
+        final String pathString = nativeJsPath.toString();
+        final String javaPath = pathString.substring(0, pathString.lastIndexOf(NativeJavaScriptFile.NATIVE_EXTENSION)) + ".java";
+        return new File(javaPath).exists() ? Optional.of(FrontendUtils.FileInfo.create(javaPath, javaPath)) : Optional.empty();
+    }
+
+    /**
+     * Returns <code>true</code> if the state persisted in the given directory by last successful compilation is still valid,
+     * and no source has been changed (or deleted) since then
+     * @param options
+     * @param orderedClasspath
+     * @param targetPath
+     * @return
+     * @throws IOException
+     */
+    private static boolean isUpToDate(Gwt3Options options, List<File> orderedClasspath, File targetPath) throws IOException {
+        // tools are hashed through the jar index, so that unchanged jars are not read again
+        final String currentToolsFingerprint = getToolsFingerprint(JarIndex.load(new File(options.getJsZipCacheDir(), JAR_INDEX_FILE_NAME)));
+        if (!isValidBuildState(options, targetPath, getConfigurationFingerprint(options, orderedClasspath, currentToolsFingerprint))) {
+            return false;
+        }
+        final FileSnapshot storedFileSnapshot = FileSnapshot.load(new File(targetPath, FILE_SNAPSHOT_FILE_NAME));
+        if (storedFileSnapshot.getPaths().stream().anyMatch(path -> !new File(path).exists())) {
+            return false;
+        }
+        for (String dir : options.getSourceDir()) {
+            try (Stream<Path> paths = Files.find(Paths.get(dir), Integer.MAX_VALUE, (filePath, fileAttr) -> !fileAttr.isDirectory() && isSnapshotSource(filePath))) {
+                for (Path path : paths.collect(Collectors.toList())) {
+                    if (storedFileSnapshot.isChanged(path)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the given directory contains the state of a successful compilation done with the same configuration,
+     * and its outputs are still there
+     * @param options
+     * @param targetPath
+     * @param configurationFingerprint
+     * @return
+     * @throws IOException
+     */
+    private static boolean isValidBuildState(Gwt3Options options, File targetPath, String configurationFingerprint) throws IOException {
+        final File storedBuildStateFile = new File(targetPath, BUILD_STATE_FILE_NAME);
+        return storedBuildStateFile.exists()
+                && new String(Files.readAllBytes(storedBuildStateFile.toPath()), StandardCharsets.UTF_8).equals(configurationFingerprint)
+                && options.getClassesDir().isDirectory()
+                && new File(options.getIntermediateJsPath()).isDirectory();
+    }
+
+    /**
+     * Returns a fingerprint of everything, but the sources, that affects the compilation output: classpath entries (with their size
+     * and modification time), tools (see {@link #getToolsFingerprint(JarIndex)}) and compilation options
+     * @param options
+     * @param orderedClasspath
+     * @param toolsFingerprint
+     * @return
+     */
+    private static String getConfigurationFingerprint(Gwt3Options options, List<File> orderedClasspath, String toolsFingerprint) {
+        final StringBuilder configuration = new StringBuilder();
+        Stream.concat(Stream.concat(orderedClasspath.stream(), options.getBytecodeClasspath().stream().map(File::new)),
+                      Stream.concat(options.getJ2clClasspath().stream().map(File::new), Stream.of(options.getBootstrapClasspath())))
+                .forEach(file -> {
+                    configuration.append(file.getAbsolutePath());
+                    if (file.isFile()) {
+                        configuration.append(':').append(file.length()).append(':').append(file.lastModified());
+                    }
+                    configuration.append('\n');
+                });
+        configuration.append(toolsFingerprint).append('\n')
+                .append(Javac.getOptions(options.getBootstrapClasspath())).append('\n')
+                .append(options.getClassesDir().getAbsolutePath()).append('\n')
+                .append(options.getGeneratedClassesDir().getAbsolutePath()).append('\n')
+                .append(options.getIntermediateJsPath()).append('\n')
+                .append(options.isDeclareLegacyNamespaces()).append('\n')
+                .append(options.getSourceDir()).append('\n');
+        return DigestUtils.md5Hex(configuration.toString());
+    }
+
+    /**
+     * Store the state of the given, successfully compiled, sources in the <code>FileSnapshot</code>, together with the
+     * one of the js sources, that have been copied or transpiled
+     * @param allSourcesToRecompile
+     */
+    private static void commitFileSnapshot(final List<FrontendUtils.FileInfo> allSourcesToRecompile) {
+        fileSnapshot.commit(allSourcesToRecompile.stream()
+                                    .map(fileInfo -> toCanonicalPath(fileInfo.sourcePath()))
+                                    .collect(Collectors.toList()));
+        try {
+            for (String dir : options.getSourceDir()) {
+                try (Stream<Path> jsPaths = Files.find(Paths.get(dir), Integer.MAX_VALUE, (path, attrs) -> !attrs.isDirectory() && jsMatcher.matches(path))) {
+                    // only the state read before compiling is committed, so that changes done in the meantime are not missed
+                    fileSnapshot.commit(jsPaths.map(path -> toCanonicalPath(path.toString())).collect(Collectors.toList()));
+                }
+            }
+            fileSnapshot.save(fileSnapshotFile);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to save file snapshot: " + e.getMessage());
+        }
+    }
+
     /**
      * Preprocess all given sources
      * @param allSourcesToRecompile
-     * @param tempDir
+     * @param processedDir the directory where preprocessed sources are written
      * @throws IOException
      */
-    private static File preProcessing(final List<FrontendUtils.FileInfo> allSourcesToRecompile, File tempDir) throws IOException {
+    private static List<FrontendUtils.FileInfo> preProcessing(final List<FrontendUtils.FileInfo> allSourcesToRecompile, File processedDir) throws IOException {
         LOGGER.info("preProcessing");
         // run preprocessor on changed files
         long startTime = System.currentTimeMillis();
-        File toReturn = File.createTempFile("preprocessed", ".srcjar", tempDir);
-        try (FileSystem out = FrontendUtils.initZipOutput(toReturn.getAbsolutePath(), new Problems())) {
-            JavaPreprocessor.preprocessFiles(allSourcesToRecompile, out.getPath("/"), new Problems());
-        }
+        List<FrontendUtils.FileInfo> toReturn = preprocessToDirectory(allSourcesToRecompile, processedDir.toPath(), preprocessCache);
         long endTime = System.currentTimeMillis() - startTime;
         LOGGER.info("preprocess: " + endTime + "millis");
         return toReturn;
     }
 
     /**
-     * Compile all given sources
+     * Preprocess the given sources straight into the given directory, where they mirror their original paths, so that
+     * they do not need to be zipped and then listed and extracted again to be transpiled.
+     * Sources that can not contain <code>@GwtIncompatible</code> are returned untouched, and, if a <code>PreprocessCache</code>
+     * is given, only the sources not found there go through the preprocessor
+     * @param sources
+     * @param outputDir
+     * @param cache
+     * @return the preprocessed sources
+     * @throws IOException
+     */
+    private static List<FrontendUtils.FileInfo> preprocessToDirectory(List<FrontendUtils.FileInfo> sources, Path outputDir, PreprocessCache cache) throws IOException {
+        final List<FrontendUtils.FileInfo> relativeSources = new ArrayList<>();
+        final List<FrontendUtils.FileInfo> toReturn = new ArrayList<>();
+        final Map<FrontendUtils.FileInfo, String> toCache = new HashMap<>();
+        for (FrontendUtils.FileInfo source : sources) {
+            // the preprocessor writes to the original path resolved against the output one: it must be relative, as it is inside a zip
+            final Path originalPath = Paths.get(source.originalPath());
+            final String relativePath = (originalPath.getRoot() != null ? originalPath.getRoot().relativize(originalPath) : originalPath).toString();
+            final Path processedPath = outputDir.resolve(relativePath).normalize();
+            if (!processedPath.startsWith(outputDir)) {
+                throw new IllegalStateException("Cannot preprocess " + source.originalPath() + " outside " + outputDir);
+            }
+            final byte[] content = Files.readAllBytes(Paths.get(source.sourcePath()));
+            if (!GwtIncompatiblePreprocessor.mayContainGwtIncompatible(content)) {
+                // nothing to strip, no need to parse it
+                toReturn.add(FrontendUtils.FileInfo.create(source.sourcePath(), relativePath));
+                continue;
+            }
+            Files.createDirectories(processedPath.getParent());
+            toReturn.add(FrontendUtils.FileInfo.create(processedPath.toString(), relativePath));
+            final FrontendUtils.FileInfo relativeSource = FrontendUtils.FileInfo.create(source.sourcePath(), relativePath);
+            if (cache != null) {
+                final String key = cache.getKey(content);
+                final byte[] cached = cache.get(key);
+                if (cached != null) {
+                    Files.write(processedPath, cached);
+                    continue;
+                }
+                toCache.put(relativeSource, key);
+            }
+            relativeSources.add(relativeSource);
+        }
+        LOGGER.info("preprocessing " + relativeSources.size() + " of " + sources.size() + " sources, the others are cached or without @GwtIncompatible");
+        if (!relativeSources.isEmpty()) {
+            JavaPreprocessor.preprocessFiles(relativeSources, outputDir, new Problems());
+        }
+        for (Map.Entry<FrontendUtils.FileInfo, String> entry : toCache.entrySet()) {
+            final String key = entry.getValue();
+            // not if changed in the meantime, since the preprocessed content may not match the key
+            if (key.equals(cache.getKey(Files.readAllBytes(Paths.get(entry.getKey().sourcePath()))))) {
+                final Path processedPath = outputDir.resolve(entry.getKey().originalPath());
+                if (Files.isRegularFile(processedPath)) {
+                    cache.put(key, Files.readAllBytes(processedPath));
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Delete the <b>millis-counter</b> directories that previous versions created, for generated sources, at each setup
+     * @param targetPath
+     */
+    private static void deleteTimestampedGeneratedDirs(File targetPath) {
+        final File[] timestampedDirs = targetPath.listFiles(file -> file.isDirectory() && TIMESTAMPED_DIR_PATTERN.matcher(file.getName()).matches());
+        if (timestampedDirs != null && timestampedDirs.length > 0) {
+            LOGGER.info("Deleting " + timestampedDirs.length + " generated source directories of previous runs");
+            for (File timestampedDir : timestampedDirs) {
+                deleteDirectory(timestampedDir);
+            }
+        }
+    }
+
+    /**
+     * Delete the given directory, with all its content
+     * @param toDelete
+     */
+    private static void deleteDirectory(File toDelete) {
+        if (!toDelete.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(toDelete.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to delete " + toDelete + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compile all given sources, per module (see {@link #compileModules(List, Map, Map)}), and update the
+     * <code>DependencyIndex</code> with the compiled classes.
+     * Compilation proceeds in waves: after each one, the sources depending on the ones whose API changed are added to
+     * <b>allSourcesToRecompile</b> and compiled in turn, until no more API changes are found.
+     * <p>
+     * Aggregating annotation processors only see the sources compiled together, so the modules generating sources are
+     * compiled whole, and their generated sources updated only then: the modules known to generate sources are completed
+     * before each wave, while the ones found generating sources after a wave are compiled again in the next one
      * @param allSourcesToRecompile
      * @throws RuntimeException
      */
     private static void compiling(final List<FrontendUtils.FileInfo> allSourcesToRecompile) throws RuntimeException {
         LOGGER.info("Java compiling");
         long startTime = System.currentTimeMillis();
-        if (!javac.compile(allSourcesToRecompile)) {
-            // Store files to recompile next attempt
-            toRecompile.addAll(allSourcesToRecompile);
-            //error occurred, should have been logged, skip the rest of this loop
-            throw new RuntimeException("Failed to compile " + allSourcesToRecompile.size() + " files");
+        final Set<String> compiledSourcePaths = allSourcesToRecompile.stream()
+                .map(fileInfo -> toCanonicalPath(fileInfo.sourcePath()))
+                .collect(Collectors.toSet());
+        List<FrontendUtils.FileInfo> toCompile = new ArrayList<>(allSourcesToRecompile);
+        writtenGeneratedSources.clear();
+        while (!toCompile.isEmpty()) {
+            // here allSourcesToRecompile already contains the dependents of the previous wave
+            checkCancelRequest(allSourcesToRecompile);
+            final List<FrontendUtils.FileInfo> generatingSources = toCompile.stream()
+                    .filter(fileInfo -> dependencyIndex.isGeneratingSources(toCanonicalPath(fileInfo.sourcePath())))
+                    .collect(Collectors.toList());
+            toCompile = addModuleSources(toCompile, moduleScheduler.getPartiallyCompiledModules(generatingSources, toCompile), compiledSourcePaths, allSourcesToRecompile);
+            final Map<String, Set<String>> previouslyDeclaredTypes = toCompile.stream()
+                    .map(fileInfo -> toCanonicalPath(fileInfo.sourcePath()))
+                    .distinct()
+                    .collect(Collectors.toMap(sourcePath -> sourcePath, dependencyIndex::getDeclaredTypes));
+            final Map<String, Set<String>> compiledTypes = new ConcurrentHashMap<>();
+            final Map<String, Set<String>> generatedSources = new ConcurrentHashMap<>();
+            if (!compileModules(toCompile, compiledTypes, generatedSources)) {
+                // Store files to recompile next attempt
+                toRecompile.addAll(allSourcesToRecompile);
+                //error occurred, should have been logged, skip the rest of this loop
+                throw new RuntimeException("Failed to compile " + allSourcesToRecompile.size() + " files");
+            }
+            final Set<String> apiChangedSources = dependencyIndex.update(compiledTypes, javac::readClassFile);
+            // types not declared anymore by the recompiled sources (and not moved to another one)
+            final Set<String> removedTypes = new HashSet<>();
+            previouslyDeclaredTypes.values().forEach(removedTypes::addAll);
+            compiledTypes.values().forEach(removedTypes::removeAll);
+            if (!removedTypes.isEmpty()) {
+                try {
+                    purgeOutputs(removedTypes);
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to purge outputs of removed types: " + e.getMessage());
+                }
+            }
+            writtenGeneratedSources.addAll(generatedSources.keySet());
+            // modules generating sources for the first time, compiled partially: their generated sources are updated
+            // when compiled whole, in the next wave
+            final List<FrontendUtils.FileInfo> originatingSources = generatedSources.values().stream()
+                    .flatMap(Set::stream)
+                    .distinct()
+                    .map(sourcePath -> FrontendUtils.FileInfo.create(sourcePath, sourcePath))
+                    .collect(Collectors.toList());
+            final Set<MavenProject> partiallyCompiledModules = moduleScheduler.getPartiallyCompiledModules(originatingSources, toCompile);
+            if (!partiallyCompiledModules.isEmpty()) {
+                final Predicate<String> inPartiallyCompiledModules = sourcePath -> partiallyCompiledModules.contains(moduleScheduler.getModule(FrontendUtils.FileInfo.create(sourcePath, sourcePath)));
+                previouslyDeclaredTypes.keySet().removeIf(inPartiallyCompiledModules);
+                generatedSources.values().removeIf(sourcePaths -> sourcePaths.stream().anyMatch(inPartiallyCompiledModules));
+            }
+            // sources not generated anymore are purged as deleted ones, and their dependents recompiled
+            final Set<String> orphanedSources = dependencyIndex.updateGeneratedSources(previouslyDeclaredTypes.keySet(), generatedSources);
+            List<FrontendUtils.FileInfo> orphanedDependents = Collections.emptyList();
+            if (!orphanedSources.isEmpty()) {
+                try {
+                    deleteGeneratedSources(orphanedSources);
+                    orphanedDependents = purgeDeletedSources();
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to purge sources not generated anymore: " + e.getMessage());
+                }
+            }
+            try {
+                dependencyIndex.save(dependencyIndexFile);
+            } catch (IOException e) {
+                LOGGER.warning("Failed to save dependency index: " + e.getMessage());
+            }
+            toCompile = Stream.concat(getDependentSources(apiChangedSources).stream(), orphanedDependents.stream())
+                    .filter(fileInfo -> compiledSourcePaths.add(toCanonicalPath(fileInfo.sourcePath())))
+                    .collect(Collectors.toList());
+            if (!toCompile.isEmpty()) {
+                LOGGER.info("API changed in " + apiChangedSources.size() + " sources, compiling " + toCompile.size() + " dependent sources");
+                allSourcesToRecompile.addAll(toCompile);
+            }
+            toCompile = addModuleSources(toCompile, partiallyCompiledModules, compiledSourcePaths, allSourcesToRecompile);
         }
         long endTime = System.currentTimeMillis() - startTime;
         LOGGER.info("javac: " + endTime + "millis");
     }
 
+    /**
+     * Returns the given sources to compile, with all the sources of the given modules added; the ones not compiled yet
+     * are added to <b>allSourcesToRecompile</b>, too
+     * @param toCompile
+     * @param modules
+     * @param compiledSourcePaths
+     * @param allSourcesToRecompile
+     * @return
+     */
+    private static List<FrontendUtils.FileInfo> addModuleSources(List<FrontendUtils.FileInfo> toCompile, Set<MavenProject> modules, Set<String> compiledSourcePaths,
+                                                                 List<FrontendUtils.FileInfo> allSourcesToRecompile) {
+        if (modules.isEmpty()) {
+            return toCompile;
+        }
+        LOGGER.info("Compiling all the sources of " + modules.size() + " modules generating sources");
+        final Map<String, FrontendUtils.FileInfo> toReturn = new LinkedHashMap<>(); // Using Map keyed by path to avoid duplicate
+        toCompile.forEach(fileInfo -> toReturn.put(toCanonicalPath(fileInfo.sourcePath()), fileInfo));
+        for (MavenProject module : modules) {
+            for (FrontendUtils.FileInfo fileInfo : moduleScheduler.getSources(module)) {
+                final String sourcePath = toCanonicalPath(fileInfo.sourcePath());
+                if (toReturn.putIfAbsent(sourcePath, fileInfo) == null && compiledSourcePaths.add(sourcePath)) {
+                    allSourcesToRecompile.add(fileInfo);
+                }
+            }
+        }
+        return new ArrayList<>(toReturn.values());
+    }
+
+    /**
+     * Compile the given sources split per module (see {@link ModuleScheduler}), each one with its own <code>Javac</code>.
+     * Modules are compiled concurrently (see {@link Gwt3Options#getModuleThreads()}), each one as soon as the modules it
+     * depends on have been compiled; sources outside modules (e.g. generated ones) are compiled last
+     * @param toCompile
+     * @param compiledTypes populated with the types compiled out of each source
+     * @param generatedSources populated with the originating sources of each generated source
+     * @return <code>false</code> if any module failed to compile
+     */
+    private static boolean compileModules(List<FrontendUtils.FileInfo> toCompile, Map<String, Set<String>> compiledTypes, Map<String, Set<String>> generatedSources) {
+        return moduleScheduler.compile(moduleScheduler.groupByModule(toCompile), options.getModuleThreads(),
+                                       (module, sources) -> compileModule(module, sources, compiledTypes, generatedSources));
+    }
+
+    /**
+     * Compile the given sources of the given module
+     * @param module the module, or <code>null</code> for sources outside modules
+     * @param sources
+     * @param compiledTypes
+     * @param generatedSources
+     * @return <code>false</code> if compilation failed
+     */
+    private static boolean compileModule(MavenProject module, List<FrontendUtils.FileInfo> sources, Map<String, Set<String>> compiledTypes, Map<String, Set<String>> generatedSources) {
+        LOGGER.info("Compiling " + sources.size() + " sources" + (module == null ? " outside modules" : " of " + module.getId()));
+        final Javac moduleJavac = module == null ? javac : moduleJavacs.computeIfAbsent(module, key -> {
+            try {
+                return newJavac();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (!moduleJavac.compile(sources)) {
+            return false;
+        }
+        compiledTypes.putAll(moduleJavac.getCompiledTypes());
+        generatedSources.putAll(moduleJavac.getGeneratedSources());
+        return true;
+    }
+
+    private static Javac newJavac() throws IOException {
+        return new Javac(generatedClassesPath, javacClasspath, options.getClassesDir(), options.getBootstrapClasspath(), classOutputStore);
+    }
+
+    /**
+     * Close all the javacs, and the store of the classes they compiled, if any
+     */
+    private static void closeJavacs() {
+        final List<Javac> toClose = new ArrayList<>(moduleJavacs.values());
+        if (javac != null) {
+            toClose.add(javac);
+        }
+        for (Javac toCloseJavac : toClose) {
+            try {
+                toCloseJavac.close();
+            } catch (IOException e) {
+                LOGGER.warning("Failed to close javac: " + e.getMessage());
+            }
+        }
+        moduleJavacs.clear();
+        javac = null;
+        if (classOutputStore != null) {
+            classOutputStore.close();
+            classOutputStore = null;
+        }
+    }
+
     /**
      * Retrieve native sources
      * @param allSourcesToRecompile
@@ -305,22 +866,31 @@ public class SingleCompiler {
     }
 
     /**
-     * Add generated sources to given ones
+     * Add to given sources the ones written by annotation processors while compiling them, if their content changed
+     * since they were last transpiled
      * @param allSourcesToRecompile
      * @throws IOException
      */
     private static void addGeneratedSources(final List<FrontendUtils.FileInfo> allSourcesToRecompile) throws IOException {
         LOGGER.info("addGeneratedSources");
         long startTime = System.currentTimeMillis();
-        // add all modified Java files
-        //TODO don't just use all generated classes, but look for changes maybe?
-        Files.find(Paths.get(generatedClassesPath.getAbsolutePath()),
-                   Integer.MAX_VALUE,
-                   (filePath, fileAttr) ->
-                           !fileAttr.isDirectory()
-                                   && javaMatcher.matches(filePath)
-                /*TODO check modified?*/
-        ).forEach(file -> allSourcesToRecompile.add(FrontendUtils.FileInfo.create(file.toString(), file.toString())));
+        final Set<String> sourcePaths = allSourcesToRecompile.stream()
+                .map(fileInfo -> toCanonicalPath(fileInfo.sourcePath()))
+                .collect(Collectors.toSet());
+        int unchanged = 0;
+        for (String generatedSource : writtenGeneratedSources) {
+            final Path generatedPath = Paths.get(generatedSource);
+            if (!Files.isRegularFile(generatedPath) || !sourcePaths.add(toCanonicalPath(generatedSource))) {
+                continue;
+            }
+            if (fileSnapshot.isChanged(generatedPath)) {
+                allSourcesToRecompile.add(FrontendUtils.FileInfo.create(generatedSource, generatedSource));
+            } else {
+                // written again by the processor, with the same content
+                unchanged++;
+            }
+        }
+        LOGGER.info(writtenGeneratedSources.size() + " generated sources written, " + unchanged + " unchanged");
         long endTime = System.currentTimeMillis() - startTime;
         LOGGER.info("addGeneratedSources: " + endTime + "millis");
     }
@@ -328,19 +898,16 @@ public class SingleCompiler {
     /**
      * Retrieves the <code>J2clTranspilerOptions.Builder</code>
      * @param nativeSources
-     * @param processedZip
+     * @param processedJavaFiles
      * @return
      */
-    private static J2clTranspilerOptions.Builder getBuilder(final List<FrontendUtils.FileInfo> nativeSources, File processedZip) {
+    private static J2clTranspilerOptions.Builder getBuilder(final List<FrontendUtils.FileInfo> nativeSources, List<FrontendUtils.FileInfo> processedJavaFiles) {
         LOGGER.info("getBuilder");
         long startTime = System.currentTimeMillis();
         J2clTranspilerOptions.Builder toReturn = baseJ2clArgs.build().toBuilder();
         if (!nativeSources.isEmpty()) {
             toReturn.setNativeSources(nativeSources);
         }
-        List<FrontendUtils.FileInfo> processedJavaFiles = FrontendUtils.getAllSources(Collections.singletonList(processedZip.getAbsolutePath()), new Problems())
-                .filter(f -> f.sourcePath().endsWith(".java"))
-                .collect(Collectors.toList());
         toReturn.setSources(processedJavaFiles);
         long endTime = System.currentTimeMillis() - startTime;
         LOGGER.info("getBuilder: " + endTime + "millis");
@@ -348,18 +915,47 @@ public class SingleCompiler {
     }
 
     /**
-     * Do transpilation
-     * @param builder
-     * @param processedZip
+     * Do transpilation, concurrently for each module (see {@link Gwt3Options#getModuleThreads()}), since they are all compiled
+     * @param builders mapped by module
+     * @param processedDir
      * @param allSourcesToRecompile
      */
-    private static void transpile(J2clTranspilerOptions.Builder builder, File processedZip, final List<FrontendUtils.FileInfo> allSourcesToRecompile) {
+    private static void transpile(Map<MavenProject, J2clTranspilerOptions.Builder> builders, File processedDir, final List<FrontendUtils.FileInfo> allSourcesToRecompile) {
         LOGGER.info("transpile");
         long startTime = System.currentTimeMillis();
-        Problems transpileResult = transpile(builder.build());
-        processedZip.delete();
-        if (transpileResult.reportAndGetExitCode(System.err) != 0) {
-            String errors = String.join(", ", transpileResult.getErrors());
+        // the transpiler reads the classes directory from disk
+        javac.flush();
+        final List<Problems> transpileResults = new ArrayList<>();
+        if (builders.size() <= 1) {
+            builders.values().forEach(builder -> transpileResults.add(transpile(builder.build())));
+        } else {
+            final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(options.getModuleThreads(), builders.size()));
+            try {
+                final List<Future<Problems>> jobs = new ArrayList<>();
+                builders.values().forEach(builder -> jobs.add(executorService.submit(() -> transpile(builder.build()))));
+                for (Future<Problems> job : jobs) {
+                    transpileResults.add(job.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                deleteDirectory(processedDir);
+                toRecompile.addAll(allSourcesToRecompile);
+                throw new RuntimeException("Error while transpiling: " + e.getMessage(), e);
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+        deleteDirectory(processedDir);
+        final List<String> transpileErrors = new ArrayList<>();
+        for (Problems transpileResult : transpileResults) {
+            if (transpileResult.reportAndGetExitCode(System.err) != 0) {
+                transpileErrors.addAll(transpileResult.getErrors());
+            }
+        }
+        if (!transpileErrors.isEmpty()) {
+            String errors = String.join(", ", transpileErrors);
             String errorMessage = "Error while transpiling: " + errors;
             LOGGER.severe(errorMessage);
             // Store files to recompile next attempt
@@ -371,20 +967,67 @@ public class SingleCompiler {
     }
 
     /**
-     * This method retrieves <b>all</b> the java sources to recompile, discovering ones in the same modules and the others in the dependent modules
-     * @param modifiedJavaFiles
+     * This method retrieves the java sources to start recompiling from, i.e. the modified ones and the ones that failed
+     * previous attempt. Sources depending on them are discovered while compiling, based on API changes (see {@link #compiling(List)}).
+     * If the <code>DependencyIndex</code> is still empty, all the sources in the same modules and in the dependent modules are returned
+     * @param modifiedFiles the modified java sources, and plain js files
      * @return
      */
-    private static List<FrontendUtils.FileInfo> getAllSourcesToRecompile(List<FrontendUtils.FileInfo> modifiedJavaFiles) {
+    private static List<FrontendUtils.FileInfo> getAllSourcesToRecompile(List<FrontendUtils.FileInfo> modifiedFiles) {
+        final Map<String, FrontendUtils.FileInfo> toReturn = new HashMap<>(); // Using Map keyed by path to avoid duplicate
+        // plain js files are only copied (see copyJs)
+        final List<FrontendUtils.FileInfo> modifiedJavaFiles = modifiedFiles.stream()
+                .filter(fileInfo -> javaMatcher.matches(Paths.get(fileInfo.sourcePath())))
+                .collect(Collectors.toList());
+        // deleted sources are handled by purgeDeletedSources
+        modifiedJavaFiles.stream()
+                .filter(fileInfo -> new File(fileInfo.sourcePath()).exists())
+                .forEach(fileInfo -> toReturn.put(toCanonicalPath(fileInfo.sourcePath()), fileInfo));
+        if (dependencyIndex.isEmpty()) {
+            getModuleWideSources(modifiedJavaFiles).forEach(fileInfo -> toReturn.putIfAbsent(toCanonicalPath(fileInfo.sourcePath()), fileInfo));
+        }
+        toRecompile.stream()
+                .filter(fileInfo -> new File(fileInfo.sourcePath()).exists())
+                .forEach(fileInfo -> toReturn.putIfAbsent(toCanonicalPath(fileInfo.sourcePath()), fileInfo));
+        toRecompile.clear();
+        LOGGER.info(modifiedJavaFiles.size() + " modified sources, " + toReturn.size() + " sources to recompile");
+        return new ArrayList<>(toReturn.values()); // returning List because it is the expected class by other methods
+    }
+
+    /**
+     * Retrieves the sources to recompile because the API of the given ones changed. For sources declaring
+     * compile-time constants, whose usages are inlined and so not tracked, all the sources in the same modules and in the dependent modules are returned
+     * @param apiChangedSources
+     * @return
+     */
+    private static List<FrontendUtils.FileInfo> getDependentSources(Set<String> apiChangedSources) {
+        final Map<String, FrontendUtils.FileInfo> toReturn = new HashMap<>(); // Using Map keyed by path to avoid duplicate
+        final List<FrontendUtils.FileInfo> constantsDeclaringSources = apiChangedSources.stream()
+                .filter(dependencyIndex::isDeclaringConstants)
+                .map(sourcePath -> FrontendUtils.FileInfo.create(sourcePath, sourcePath))
+                .collect(Collectors.toList());
+        if (!constantsDeclaringSources.isEmpty()) {
+            getModuleWideSources(constantsDeclaringSources).forEach(fileInfo -> toReturn.putIfAbsent(toCanonicalPath(fileInfo.sourcePath()), fileInfo));
+        }
+        dependencyIndex.getDependentSources(apiChangedSources).stream()
+                .filter(sourcePath -> new File(sourcePath).exists())
+                .forEach(sourcePath -> toReturn.putIfAbsent(sourcePath, FrontendUtils.FileInfo.create(sourcePath, sourcePath)));
+        return new ArrayList<>(toReturn.values());
+    }
+
+    /**
+     * Retrieves all the sources in the modules of the given ones, and in their downstream modules
+     * @param javaFiles
+     * @return
+     */
+    private static Set<FrontendUtils.FileInfo> getModuleWideSources(List<FrontendUtils.FileInfo> javaFiles) {
         // Using Set to avoid duplicate
-        final Set<MavenProject> directlyModifiedMavenProjects = retrieveDirectlyModifiedMavenProjects(modifiedJavaFiles);
+        final Set<MavenProject> directlyModifiedMavenProjects = retrieveDirectlyModifiedMavenProjects(javaFiles);
         Set<MavenProject> mavenProjectsToRecompile = new HashSet<>(directlyModifiedMavenProjects);
         directlyModifiedMavenProjects.forEach(modifiedProject -> recursivelyPopulateDownStreamProjects(modifiedProject, mavenProjectsToRecompile));
-        Set<FrontendUtils.FileInfo> toReturn = new HashSet<>(); // Using Set
+        Set<FrontendUtils.FileInfo> toReturn = new HashSet<>();
         mavenProjectsToRecompile.forEach(mavenProject -> populateAllSourcesInMavenProject(mavenProject, toReturn));
-        toReturn.addAll(toRecompile);
-        toRecompile.clear();
-        return new ArrayList<>(toReturn); // returning List because it is the expected class by other methods
+        return toReturn;
     }
 
     /**
@@ -392,9 +1035,9 @@ public class SingleCompiler {
      * @param modifiedJavaFiles
      */
     private static Set<MavenProject> retrieveDirectlyModifiedMavenProjects(List<FrontendUtils.FileInfo> modifiedJavaFiles) {
-        return baseDirProjectMap.keySet().stream()
-                .filter(baseDir -> modifiedJavaFiles.stream().anyMatch(fileInfo -> fileInfo.sourcePath().startsWith(baseDir)))
-                .map(baseDir -> baseDirProjectMap.get(baseDir))
+        return modifiedJavaFiles.stream()
+                .map(moduleScheduler::getModule)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
     }
 
@@ -432,31 +1075,146 @@ public class SingleCompiler {
     }
 
     /**
-     * This method incrementally transpile the dependencies in the given <code>List</code> classpath, starting from the <b>fixedClassPathElements</b> element (i.e. elements from 0 to fixedClassPathElements -1
-     * are always set in the classpath)
+     * Transpile all the dependencies in <b>toTranspile</b> (skipping the first ones, that are the <b>originalClassPath</b>) to
+     * the jszip cache, and return the closure arguments to use them.
+     * <p>
+     * Dependencies are transpiled in waves, following the given dependency graph: each wave contains the dependencies
+     * whose own dependencies have been handled by the previous ones, and its items are transpiled concurrently
+     * (see {@link Gwt3Options#getDependencyThreads()}), each one with its dependencies on the classpath
      * @param toTranspile
+     * @param dependencyGraph
      * @param baseJ2clArgs
      * @param persistentInputStore
      * @param originalClassPath
+     * @param tempDir
      * @return
      * @throws IOException
      */
-    private static List<String> progressivelyHandleDependencies(List<File> toTranspile, J2clTranspilerOptions.Builder baseJ2clArgs, PersistentInputStore persistentInputStore, List<String> originalClassPath, File tempDir) throws IOException {
+    private static List<String> progressivelyHandleDependencies(List<File> toTranspile, Map<File, Set<File>> dependencyGraph, J2clTranspilerOptions.Builder baseJ2clArgs, PersistentInputStore persistentInputStore, List<String> originalClassPath, File tempDir) throws IOException {
+        final List<File> dependencies = toTranspile.subList(originalClassPath.size(), toTranspile.size()).stream()
+                .filter(SingleCompiler::isToTranspile)
+                .distinct()
+                .collect(Collectors.toList());
+        final J2clTranspilerOptions baseOptions = baseJ2clArgs.build();
+        final Map<File, String> jsZips = new ConcurrentHashMap<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(options.getDependencyThreads());
+        try {
+            // hash concurrently, up front, all the jars the cache keys are built of
+            final List<File> toHash = new ArrayList<>(dependencies);
+            originalClassPath.forEach(classpathEntry -> toHash.add(new File(classpathEntry)));
+            FileHasher.hashAll(jarIndex, toHash, executorService);
+            for (List<File> wave : getDependencyWaves(dependencies, dependencyGraph)) {
+                LOGGER.info("Transpiling " + wave.size() + " dependencies");
+                final List<Future<?>> jobs = new ArrayList<>();
+                for (File toHandle : wave) {
+                    final List<String> classpath = new ArrayList<>(originalClassPath);
+                    getTransitiveDependencies(toHandle, dependencyGraph).stream()
+                            .map(File::getAbsolutePath)
+                            .filter(path -> !classpath.contains(path))
+                            .forEach(classpath::add);
+                    jobs.add(executorService.submit(() -> {
+                        final String jsZip = populateHandleDependencies(toHandle, baseOptions, classpath, tempDir);
+                        if (jsZip != null) {
+                            jsZips.put(toHandle, jsZip);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> job : jobs) {
+                    try {
+                        job.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while transpiling dependencies", e);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        // keep the classpath order in closure args
         List<String> toReturn = new ArrayList<>();
-        for (int i = originalClassPath.size(); i < toTranspile.size(); i++) {
-            File toHandle = toTranspile.get(i);
-            List<String> newClasspath = new ArrayList<>(originalClassPath);
-            if (isToTranspile(toHandle)) {
-                populateHandleDependencies(toHandle, baseJ2clArgs, persistentInputStore, toReturn, tempDir);
-                newClasspath.add(toHandle.getAbsolutePath());
-                baseJ2clArgs.setClasspaths(newClasspath);
+        for (File dependency : dependencies) {
+            final String jsZip = jsZips.get(dependency);
+            if (jsZip != null) {
+                toReturn.add("--jszip");
+                toReturn.add(jsZip);
+                persistentInputStore.addInput(jsZip, "0");
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Evict, in background, the least recently used jszips beyond the maximum size of the jsZipCacheDir, and the leftovers of crashed builds
+     * @param transpiledDependencies the closure args of the jszips used by this build, which are kept along with the bytecode jars
+     */
+    private static void startJsZipCacheCleaning(List<String> transpiledDependencies) {
+        // even if unbounded, leftovers of crashed builds have to be deleted
+        final long maxSize = options.getJsZipCacheMaxSize() > 0 ? options.getJsZipCacheMaxSize() : Long.MAX_VALUE;
+        final Set<File> inUse = Stream.concat(transpiledDependencies.stream().filter(arg -> !arg.equals("--jszip")),
+                                              dependencyBytecode.values().stream())
+                .map(cacheEntry -> new File(cacheEntry).getAbsoluteFile())
+                .collect(Collectors.toSet());
+        final JsZipCacheCleaner cleaner = new JsZipCacheCleaner(new File(options.getJsZipCacheDir()), maxSize);
+        Thread cleaningThread = new Thread(() -> cleaner.clean(inUse), "j2cl-jszip-cache-cleaner");
+        cleaningThread.setDaemon(true);
+        cleaningThread.setPriority(Thread.MIN_PRIORITY);
+        cleaningThread.start();
+    }
+
+    /**
+     * Split the given dependencies in waves: the first one contains the dependencies without dependencies (among the given ones),
+     * each of the following ones the dependencies whose dependencies are all in the previous waves
+     * @param dependencies
+     * @param dependencyGraph
+     * @return
+     */
+    private static List<List<File>> getDependencyWaves(List<File> dependencies, Map<File, Set<File>> dependencyGraph) {
+        final List<List<File>> toReturn = new ArrayList<>();
+        final Set<File> toPlace = new HashSet<>(dependencies);
+        while (!toPlace.isEmpty()) {
+            final List<File> wave = dependencies.stream()
+                    .filter(toPlace::contains)
+                    .filter(dependency -> dependencyGraph.getOrDefault(dependency, Collections.emptySet()).stream().noneMatch(toPlace::contains))
+                    .collect(Collectors.toList());
+            if (wave.isEmpty()) {
+                // cycle: should never happen, handle the remaining ones together
+                wave.addAll(dependencies.stream().filter(toPlace::contains).collect(Collectors.toList()));
             }
+            toPlace.removeAll(wave);
+            toReturn.add(wave);
         }
         return toReturn;
     }
 
     /**
-     * Verify if the given <code>File</code> is to be transpiled - i.e. it is changed
+     * Retrieves all the direct and indirect dependencies of the given one
+     * @param dependency
+     * @param dependencyGraph
+     * @return
+     */
+    private static Set<File> getTransitiveDependencies(File dependency, Map<File, Set<File>> dependencyGraph) {
+        final Set<File> toReturn = new LinkedHashSet<>();
+        final Deque<File> toVisit = new ArrayDeque<>(dependencyGraph.getOrDefault(dependency, Collections.emptySet()));
+        while (!toVisit.isEmpty()) {
+            final File visited = toVisit.pop();
+            if (toReturn.add(visited)) {
+                toVisit.addAll(dependencyGraph.getOrDefault(visited, Collections.emptySet()));
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Verify if the given <code>File</code> is to be transpiled, i.e. it is a jar, not known (by the <code>JarIndex</code>)
+     * to be unchanged and without sources. Jars already transpiled are not skipped here: their cached jszips are looked up
+     * by cache key (see {@link #populateHandleDependencies(File, J2clTranspilerOptions, List, File)})
      * @param toCheck
      * @return
      */
@@ -464,61 +1222,213 @@ public class SingleCompiler {
         if (!toCheck.exists()) {
             throw new IllegalStateException(toCheck + " does not exist!");
         }
-        //TODO maybe skip certain files that have already been transpiled
         if (toCheck.isDirectory()) {
             return false;//...hacky, but probably just classes dir
         }
-        // TODO Implement actual check
+        if (jarIndex.isWithoutSources(toCheck)) {
+            LOGGER.info("no sources in unchanged file " + toCheck);
+            return false;
+        }
         return true;
     }
 
-    private static void populateHandleDependencies(File toHandle, J2clTranspilerOptions.Builder baseJ2clArgs, PersistentInputStore persistentInputStore, List<String> toPopulate, File tempDir) throws IOException {
-        // hash the file, see if we already have one
-        String hash = hash(toHandle);
-        String jszipOut = options.getJsZipCacheDir() + "/" + hash + "-" + toHandle.getName() + ".js.zip";
+    /**
+     * Transpile the given dependency to the jszip cache, if not already there
+     * @param toHandle
+     * @param baseOptions
+     * @param classpath the classpath to transpile this dependency against
+     * @param tempDir
+     * @return the cached jszip, or <code>null</code> if there is nothing to transpile or transpilation failed
+     * @throws IOException
+     */
+    private static String populateHandleDependencies(File toHandle, J2clTranspilerOptions baseOptions, List<String> classpath, File tempDir) throws IOException {
+        // see if we already have one
+        String cacheEntry = options.getJsZipCacheDir() + "/" + getCacheKey(toHandle, classpath) + "-" + toHandle.getName();
+        String jszipOut = cacheEntry + JsZipCacheCleaner.JSZIP_SUFFIX;
         LOGGER.info(toHandle + " will be built to " + jszipOut);
         File jszipOutFile = new File(jszipOut);
+        File bytecodeOutFile = new File(cacheEntry + JsZipCacheCleaner.BYTECODE_JAR_SUFFIX);
         if (jszipOutFile.exists()) {
-            toPopulate.add("--jszip");
-            toPopulate.add(jszipOut);
-            persistentInputStore.addInput(jszipOut, "0");
-            return;//already exists, we'll use it
+            JsZipCacheCleaner.touch(jszipOutFile);
+            useDependencyBytecode(toHandle, bytecodeOutFile);
+            return jszipOut;//already exists, we'll use it
         }
-        // run preprocessor
-        File processed = File.createTempFile("preprocessed", ".srcjar", tempDir);
-        try (FileSystem out = FrontendUtils.initZipOutput(processed.getAbsolutePath(), new Problems())) {
-            ImmutableList<FrontendUtils.FileInfo> allSources = FrontendUtils.getAllSources(Collections.singletonList(toHandle.getAbsolutePath()), new Problems())
-                    .filter(f -> f.sourcePath().endsWith(".java"))
-                    .collect(ImmutableList.toImmutableList());
-            if (allSources.isEmpty()) {
+        // concurrent builders (e.g. parallel CI jobs sharing the jsZipCacheDir) wait for the one building it
+        try (JsZipCacheLock lock = JsZipCacheLock.acquire(jszipOutFile)) {
+            if (jszipOutFile.exists()) {
+                LOGGER.info(jszipOutFile.getName() + " built in the meantime");
+                useDependencyBytecode(toHandle, bytecodeOutFile);
+                return jszipOut;
+            }
+            // did it already fail, with the very same inputs?
+            File failedMarker = new File(jszipOut + JsZipCacheCleaner.FAILED_SUFFIX);
+            if (failedMarker.exists()) {
+                if (!options.isRetryFailedDependencies()) {
+                    JsZipCacheCleaner.touch(failedMarker);
+                    LOGGER.info("Skipping " + toHandle + ", that failed compiling with the same inputs, set retryFailedDependencies to retry it");
+                    return null;
+                }
+                failedMarker.delete();
+            }
+            if (fetchFromSharedJsZipCache(jszipOutFile)) {
+                fetchFromSharedJsZipCache(bytecodeOutFile);
+                useDependencyBytecode(toHandle, bytecodeOutFile);
+                return jszipOut;
+            }
+            // extracted once, for both java and native sources
+            List<FrontendUtils.FileInfo> dependencySources = FrontendUtils.getAllSources(Collections.singletonList(toHandle.getAbsolutePath()), new Problems())
+                    .collect(Collectors.toList());
+            if (dependencySources.stream().noneMatch(f -> f.sourcePath().endsWith(".java"))) {
                 LOGGER.info("no sources in file " + toHandle);
-                return;
+                jarIndex.setWithoutSources(toHandle);
+                return null;
+            }
+            // built aside, and moved in place only when complete, so that they are never seen half-written
+            File jszipTempFile = File.createTempFile(jszipOutFile.getName(), ".tmp", jszipOutFile.getParentFile());
+            File bytecodeTempFile = File.createTempFile(bytecodeOutFile.getName(), ".tmp", bytecodeOutFile.getParentFile());
+            try {
+                // the zip file system requires the file to not exist
+                jszipTempFile.delete();
+                bytecodeTempFile.delete();
+                boolean built = buildJsZip(toHandle, baseOptions, classpath, tempDir, dependencySources, jszipTempFile, bytecodeTempFile);
+                if (bytecodeTempFile.exists()) {
+                    moveAtomically(bytecodeTempFile.toPath(), bytecodeOutFile.toPath());
+                    useDependencyBytecode(toHandle, bytecodeOutFile);
+                }
+                if (!built) {
+                    // the failure is cached with the same key of the jszip, so that fixing the classpath (or updating the dependency
+                    // or the tools) retries it, while we don't fail building jsinterop-base over and over again
+                    try {
+                        Files.write(failedMarker.toPath(), ("Failed compiling " + toHandle + "\n").getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        LOGGER.warning("Failed to write " + failedMarker + ": " + e.getMessage());
+                    }
+                    LOGGER.info("Failed compiling " + toHandle + " to " + jszipOutFile.getName() + ", optionally copy a manual version to the cache to avoid this error");
+                    return null;
+                }
+                moveAtomically(jszipTempFile.toPath(), jszipOutFile.toPath());
+            } finally {
+                jszipTempFile.delete();
+                bytecodeTempFile.delete();
             }
-            JavaPreprocessor.preprocessFiles(allSources, out.getPath("/"), new Problems());
+            // the bytecode first, so that it is there for whoever finds the jszip
+            if (bytecodeOutFile.exists()) {
+                storeToSharedJsZipCache(bytecodeOutFile);
+            }
+            storeToSharedJsZipCache(jszipOutFile);
+            return jszipOut;
         }
+    }
 
-        //TODO javac these first, so we have consistent bytecode, and use that to rebuild the classpath
-        J2clTranspilerOptions.Builder pretranspile = baseJ2clArgs.build().toBuilder();
-        // in theory, we only preCompile with the dependencies for this particular dep
-        pretranspile.setOutput(FrontendUtils.initZipOutput(jszipOut, new Problems()).getPath("/"));
-        pretranspile.setNativeSources(FrontendUtils.getAllSources(Collections.singletonList(toHandle.getAbsolutePath()), new Problems())
-                                              .filter(p -> p.sourcePath().endsWith(".native.js"))
-                                              .collect(ImmutableList.toImmutableList()));
-        List<FrontendUtils.FileInfo> processedJavaFiles = FrontendUtils.getAllSources(Collections.singletonList(processed.getAbsolutePath()), new Problems())
+    /**
+     * Fetch the given cache entry from the shared jszip cache, if any
+     * @param cacheEntry
+     * @return <code>true</code> if the entry has been fetched
+     */
+    private static boolean fetchFromSharedJsZipCache(File cacheEntry) {
+        if (sharedJsZipCache != null) {
+            try {
+                if (sharedJsZipCache.fetch(cacheEntry.getName(), cacheEntry.toPath())) {
+                    LOGGER.info(cacheEntry.getName() + " fetched from " + sharedJsZipCache);
+                    return true;
+                }
+            } catch (IOException e) {
+                LOGGER.warning("Failed to fetch " + cacheEntry.getName() + " from " + sharedJsZipCache + ": " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Store the given cache entry to the shared jszip cache, if any and if enabled
+     * @param cacheEntry
+     */
+    private static void storeToSharedJsZipCache(File cacheEntry) {
+        if (sharedJsZipCache != null && options.isStoreToSharedJsZipCache()) {
+            try {
+                sharedJsZipCache.store(cacheEntry.getName(), cacheEntry.toPath());
+            } catch (IOException e) {
+                LOGGER.warning("Failed to store " + cacheEntry.getName() + " to " + sharedJsZipCache + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Use the given bytecode jar, if it exists, in place of the given dependency in the classpaths
+     * @param dependency
+     * @param bytecodeJar
+     */
+    private static void useDependencyBytecode(File dependency, File bytecodeJar) {
+        if (bytecodeJar.exists()) {
+            JsZipCacheCleaner.touch(bytecodeJar);
+            dependencyBytecode.put(dependency.getAbsolutePath(), bytecodeJar.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the given classpath, with the dependencies replaced by their bytecode jars, if compiled
+     * @param classpath
+     * @return
+     */
+    private static List<String> toBytecodeClasspath(List<String> classpath) {
+        return classpath.stream()
+                .map(classpathEntry -> dependencyBytecode.getOrDefault(new File(classpathEntry).getAbsolutePath(), classpathEntry))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Preprocess, compile and transpile the given dependency to the given bytecode jar and jszip
+     * @param toHandle
+     * @param baseOptions
+     * @param classpath the classpath to compile and transpile this dependency against
+     * @param tempDir
+     * @param dependencySources all the sources of the dependency, native ones included
+     * @param jszipOutFile
+     * @param bytecodeOutFile
+     * @return <code>true</code> if both compilation and transpilation succeeded; if transpilation failed,
+     * <code>jszipOutFile</code> does not exist, and if compilation failed <code>bytecodeOutFile</code> does not exist
+     * @throws IOException
+     */
+    private static boolean buildJsZip(File toHandle, J2clTranspilerOptions baseOptions, List<String> classpath, File tempDir, List<FrontendUtils.FileInfo> dependencySources,
+                                      File jszipOutFile, File bytecodeOutFile) throws IOException {
+        ImmutableList<FrontendUtils.FileInfo> allSources = dependencySources.stream()
                 .filter(f -> f.sourcePath().endsWith(".java"))
                 .collect(ImmutableList.toImmutableList());
-        if (processedJavaFiles.isEmpty()) {
-            LOGGER.info("no sources left in " + toHandle + " after preprocessing");
-            return;
+        // run preprocessor
+        File processedDir = Files.createTempDirectory(tempDir.toPath(), "preprocessed").toFile();
+        try {
+            return compileAndTranspile(toHandle, baseOptions, classpath, tempDir, jszipOutFile, bytecodeOutFile, dependencySources, preprocessToDirectory(allSources, processedDir.toPath(), null));
+        } finally {
+            deleteDirectory(processedDir);
         }
+    }
+
+    /**
+     * Compile and transpile the given preprocessed sources of the given dependency, see {@link #buildJsZip(File, J2clTranspilerOptions, List, File, List, File, File)}
+     * @param dependencySources all the sources of the dependency, native ones included
+     * @param processedJavaFiles
+     */
+    private static boolean compileAndTranspile(File toHandle, J2clTranspilerOptions baseOptions, List<String> classpath, File tempDir, File jszipOutFile, File bytecodeOutFile,
+                                               List<FrontendUtils.FileInfo> dependencySources, List<FrontendUtils.FileInfo> processedJavaFiles) throws IOException {
+        // the bytecode of the dependencies it depends on, compiled before by the previous waves
+        List<String> bytecodeClasspath = toBytecodeClasspath(classpath);
+        J2clTranspilerOptions.Builder pretranspile = baseOptions.toBuilder().setClasspaths(bytecodeClasspath);
+        // in theory, we only preCompile with the dependencies for this particular dep
+        pretranspile.setOutput(FrontendUtils.initZipOutput(jszipOutFile.getAbsolutePath(), new Problems()).getPath("/"));
+        pretranspile.setNativeSources(dependencySources.stream()
+                                              .filter(p -> p.sourcePath().endsWith(".native.js"))
+                                              .collect(ImmutableList.toImmutableList()));
+        // javac these first, so we have consistent bytecode, used to rebuild the classpath
+        boolean compiled = DependencyCompiler.compile(toHandle, processedJavaFiles, bytecodeClasspath.stream().map(File::new).collect(Collectors.toList()),
+                                                      options.getBootstrapClasspath(), tempDir, bytecodeOutFile);
         pretranspile.setSources(processedJavaFiles);
         Problems result = transpile(pretranspile.build());
+        boolean transpiled = result.reportAndGetExitCode(System.err) == 0;
 
         // blindly copy any JS in sources that aren't a native.js
-        ZipFile zipInputFile = new ZipFile(toHandle);
-        processed.delete();
-        if (result.reportAndGetExitCode(System.err) == 0) {
-            try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + jszipOutFile.toURI()), Collections.singletonMap("create", "true"))) {
+        if (transpiled) {
+            try (ZipFile zipInputFile = new ZipFile(toHandle);
+                 FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + jszipOutFile.toURI()), Collections.singletonMap("create", "true"))) {
                 for (ZipEntry entry : Collections.list(zipInputFile.entries())) {
                     Path entryPath = Paths.get(entry.getName());
                     if (jsMatcher.matches(entryPath) && !nativeJsMatcher.matches(entryPath)) {
@@ -531,25 +1441,258 @@ public class SingleCompiler {
                     }
                 }
             }
-            toPopulate.add("--jszip");
-            toPopulate.add(jszipOut);
-            persistentInputStore.addInput(jszipOut, "0");
         } else {
             jszipOutFile.delete();
-            // ignoring failure for now, TODO don't!
-            // This is actually slightly tricky - we can't cache failure, since the user might stop and fix the classpath
-            // and then the next build will work, but on the other hand we don't want to fail building jsinterop-base
-            // over and over again either.
-            LOGGER.info("Failed compiling " + toHandle + " to " + jszipOutFile.getName() + ", optionally copy a manual version to the cache to avoid this error");
         }
+        return compiled && transpiled;
     }
 
-    private static String hash(File file) {
-        try (FileInputStream stream = new FileInputStream(file)) {
-            return DigestUtils.md5Hex(stream);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    /**
+     * Move the given file to the given target, atomically if the file system supports it
+     * @param source
+     * @param target
+     * @throws IOException
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the <code>JsZipCache</code> at the given location, i.e. an http(s) url or a directory, or <code>null</code> if no location is given
+     * @param location
+     * @return
+     * @throws IOException
+     */
+    private static JsZipCache getSharedJsZipCache(String location) throws IOException {
+        if (location == null || location.trim().isEmpty()) {
+            return null;
+        }
+        LOGGER.info("shared jszip cache " + location);
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new HttpJsZipCache(location);
+        }
+        return new DirectoryJsZipCache(new File(location));
+    }
+
+    /**
+     * Returns the key of the cached jszip of the given dependency, built out of everything that affects it: the dependency
+     * itself, the transpiler and preprocessor versions, the transpiler flags and the classpath it is transpiled against
+     * (directories, i.e. classes of the project being built, excluded)
+     * @param dependency
+     * @param classpath
+     * @return
+     * @throws IOException
+     */
+    private static String getCacheKey(File dependency, List<String> classpath) throws IOException {
+        final StringBuilder key = new StringBuilder();
+        key.append(jarIndex.getHash(dependency)).append('\n')
+                .append(toolsFingerprint).append('\n')
+                .append("declareLegacyNamespaces=").append(options.isDeclareLegacyNamespaces()).append('\n');
+        for (String classpathEntry : classpath) {
+            final File classpathFile = new File(classpathEntry);
+            if (classpathFile.isFile()) {
+                key.append(jarIndex.getHash(classpathFile)).append('\n');
+            }
+        }
+        return DigestUtils.md5Hex(key.toString());
+    }
+
+    /**
+     * Returns a fingerprint of the tools used to create the cached jszips, i.e. of the jars containing the transpiler,
+     * the preprocessor, and this plugin (or of their class files, if they are not loaded from jars)
+     * @param jarIndex
+     * @return
+     * @throws IOException
+     */
+    private static String getToolsFingerprint(JarIndex jarIndex) throws IOException {
+        final StringBuilder toReturn = new StringBuilder();
+        for (Class<?> tool : Arrays.asList(J2clTranspiler.class, JavaPreprocessor.class, SingleCompiler.class)) {
+            toReturn.append(tool.getName()).append('=');
+            final CodeSource codeSource = tool.getProtectionDomain().getCodeSource();
+            File location = null;
+            if (codeSource != null && codeSource.getLocation() != null) {
+                try {
+                    location = new File(codeSource.getLocation().toURI());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    LOGGER.warning("Failed to locate " + tool.getName() + ": " + e.getMessage());
+                }
+            }
+            if (location != null && location.isFile()) {
+                toReturn.append(jarIndex.getHash(location));
+            } else if (location != null && location.isDirectory()) {
+                // exploded classes, e.g. while developing: their version, if any, is not updated at each change
+                toReturn.append(getClassesHash(location.toPath()));
+            } else {
+                try (InputStream classFile = tool.getResourceAsStream(tool.getSimpleName() + ".class")) {
+                    if (classFile == null) {
+                        throw new IOException("Failed to read the class file of " + tool.getName());
+                    }
+                    toReturn.append(DigestUtils.md5Hex(classFile));
+                }
+            }
+            toReturn.append('\n');
+        }
+        return DigestUtils.md5Hex(toReturn.toString());
+    }
+
+    /**
+     * Returns a hash of the content of all the class files inside the given directory
+     * @param classesDir
+     * @return
+     * @throws IOException
+     */
+    private static String getClassesHash(Path classesDir) throws IOException {
+        final StringBuilder toReturn = new StringBuilder();
+        try (Stream<Path> classFiles = Files.find(classesDir, Integer.MAX_VALUE, (path, attrs) -> attrs.isRegularFile() && path.toString().endsWith(".class"))) {
+            for (Path classFile : classFiles.sorted().collect(Collectors.toList())) {
+                toReturn.append(classesDir.relativize(classFile)).append(':').append(FileHasher.hash(classFile)).append('\n');
+            }
+        }
+        return DigestUtils.md5Hex(toReturn.toString());
+    }
+
+    /**
+     * Purge all the outputs of the sources deleted since last compilation, and remove them from the incremental state.
+     * The sources generated only out of deleted ones are deleted, and purged, too
+     * @return the existing sources depending on the deleted ones, or generating them, that have to be recompiled, and all
+     * the sources of the modules of the deleted ones that generated sources
+     * @throws IOException
+     */
+    private static List<FrontendUtils.FileInfo> purgeDeletedSources() throws IOException {
+        final Set<String> deletedSources = dependencyIndex.getSourcePaths().stream()
+                .filter(sourcePath -> !new File(sourcePath).exists())
+                .collect(Collectors.toCollection(HashSet::new));
+        if (deletedSources.isEmpty()) {
+            return Collections.emptyList();
         }
+        // generated sources deleted from outside (e.g. by a clean) are generated again out of their originating sources
+        final List<FrontendUtils.FileInfo> toRegenerate = dependencyIndex.getOriginatingSources(deletedSources).stream()
+                .filter(sourcePath -> new File(sourcePath).exists())
+                .map(sourcePath -> FrontendUtils.FileInfo.create(sourcePath, sourcePath))
+                .collect(Collectors.toList());
+        // aggregating processors have to see the remaining sources of their modules
+        final Set<FrontendUtils.FileInfo> toReaggregate = new HashSet<>();
+        deletedSources.stream()
+                .filter(dependencyIndex::isGeneratingSources)
+                .map(sourcePath -> moduleScheduler.getModule(FrontendUtils.FileInfo.create(sourcePath, sourcePath)))
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(module -> toReaggregate.addAll(moduleScheduler.getSources(module)));
+        // the sources generated only out of deleted ones are not generated anymore
+        Set<String> orphanedSources = dependencyIndex.updateGeneratedSources(deletedSources, Collections.emptyMap());
+        while (!orphanedSources.isEmpty()) {
+            deleteGeneratedSources(orphanedSources);
+            deletedSources.addAll(orphanedSources);
+            orphanedSources = dependencyIndex.updateGeneratedSources(orphanedSources, Collections.emptyMap());
+        }
+        LOGGER.info("Purging outputs of " + deletedSources.size() + " deleted sources");
+        // retrieved before removing the deleted sources from the index
+        final List<FrontendUtils.FileInfo> toReturn = getDependentSources(deletedSources);
+        final Set<String> deletedTypes = new HashSet<>();
+        for (String deletedSource : deletedSources) {
+            deletedTypes.addAll(dependencyIndex.getDeclaredTypes(deletedSource));
+            dependencyIndex.remove(deletedSource);
+            fileSnapshot.remove(deletedSource);
+        }
+        purgeOutputs(deletedTypes);
+        dependencyIndex.save(dependencyIndexFile);
+        fileSnapshot.save(fileSnapshotFile);
+        toReturn.addAll(toRegenerate);
+        toReturn.addAll(toReaggregate);
+        return toReturn;
+    }
+
+    /**
+     * Remove from the <code>FileSnapshot</code> the js sources deleted since last compilation, deleting the copies of the
+     * plain ones from the intermediate js directory
+     * @return the existing java sources of the deleted <code>.native.js</code> files, that have to be transpiled again without them
+     * @throws IOException
+     */
+    private static List<FrontendUtils.FileInfo> purgeDeletedJsSources() throws IOException {
+        final List<FrontendUtils.FileInfo> toReturn = new ArrayList<>();
+        for (String sourcePath : fileSnapshot.getPaths()) {
+            final Path path = Paths.get(sourcePath);
+            if (!jsMatcher.matches(path) || Files.exists(path)) {
+                continue;
+            }
+            fileSnapshot.remove(sourcePath);
+            if (nativeJsMatcher.matches(path)) {
+                getNativeJavaSource(path).ifPresent(toReturn::add);
+                continue;
+            }
+            for (String dir : options.getSourceDir()) {
+                final Path sourceDir = Paths.get(toCanonicalPath(dir));
+                if (path.startsWith(sourceDir)) {
+                    Files.deleteIfExists(Paths.get(options.getIntermediateJsPath(), sourceDir.relativize(path).toString()));
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Delete the given sources, generated by annotation processors
+     * @param generatedSources
+     * @throws IOException
+     */
+    private static void deleteGeneratedSources(Set<String> generatedSources) throws IOException {
+        LOGGER.info("Deleting " + generatedSources.size() + " sources not generated anymore");
+        for (String generatedSource : generatedSources) {
+            Files.deleteIfExists(Paths.get(generatedSource));
+        }
+    }
+
+    /**
+     * Delete the .class and the transpiled files of the given types, and discard the js inputs cached for closure
+     * @param types binary names
+     * @throws IOException
+     */
+    private static void purgeOutputs(Set<String> types) throws IOException {
+        for (String type : types) {
+            javac.deleteClassFile(type);
+            // j2cl outputs of p.Foo$Bar are p/Foo$Bar.java.js, p/Foo$Bar.impl.java.js, p/Foo$Bar.native.js, ...
+            // while a plain p/Foo$Bar.js is a copied source, that must be kept
+            final int lastDot = type.lastIndexOf('.');
+            final Path packageDir = lastDot < 0 ? Paths.get(intermediateJsPath) : Paths.get(intermediateJsPath, type.substring(0, lastDot).split("\\."));
+            final String simpleName = type.substring(lastDot + 1);
+            for (String outputSuffix : J2CL_OUTPUT_SUFFIXES) {
+                Files.deleteIfExists(packageDir.resolve(simpleName + outputSuffix));
+            }
+        }
+        LOGGER.info("Purged outputs of " + types.size() + " types");
+        resetPersistentInputStore();
+    }
+
+    /**
+     * Replace the <code>PersistentInputStore</code> with a new one containing only the dependencies (jszips), so that the
+     * entries of purged js files are not retained (and parsed) anymore
+     */
+    private static void resetPersistentInputStore() {
+        persistentInputStore = new PersistentInputStore();
+        for (int i = 0; i < baseClosureArgs.size() - 1; i++) {
+            if ("--jszip".equals(baseClosureArgs.get(i))) {
+                persistentInputStore.addInput(baseClosureArgs.get(i + 1), "0");
+            }
+        }
+    }
+
+    /**
+     * Throws a <code>CancellationException</code> if cancellation has been requested, storing the given sources to recompile next attempt
+     * @param allSourcesToRecompile
+     */
+    private static void checkCancelRequest(final List<FrontendUtils.FileInfo> allSourcesToRecompile) {
+        if (cancelRequested) {
+            toRecompile.addAll(allSourcesToRecompile);
+            throw new CancellationException("Compilation cancelled");
+        }
+    }
+
+    private static String toCanonicalPath(String path) {
+        return Paths.get(path).toAbsolutePath().normalize().toString();
     }
 
     private static boolean matchesChangedJavaFile(Path path, List<FrontendUtils.FileInfo> modifiedJavaFiles) {
@@ -594,7 +1737,7 @@ public class SingleCompiler {
             // add updated JS file to the input store with timestamp instead of digest for now
             persistentInputStore.addInput(path.toString(), timestamp + "");
         });
-        //TODO how do we handle deleted files? If they are truly deleted, nothing should reference them, and the module resolution should shake them out, at only the cost of a little memory?
+        // outputs of deleted sources are purged, together with their entries in the input store, at preCompile (see purgeDeletedSources)
 
         jscompRunner.run();
 
@@ -608,26 +1751,6 @@ public class SingleCompiler {
         return true;
     }
 
-    private static File createTempDir(File baseDir) {
-        int TEMP_DIR_ATTEMPTS = 10000;
-        String baseName = System.currentTimeMillis() + "-";
-        for (int counter = 0; counter < TEMP_DIR_ATTEMPTS; counter++) {
-            File tempDir = new File(baseDir, baseName + counter);
-            if (tempDir.mkdir()) {
-                return tempDir;
-            }
-        }
-        throw new IllegalStateException(
-                "Failed to create directory within "
-                        + TEMP_DIR_ATTEMPTS
-                        + " attempts (tried "
-                        + baseName
-                        + "0 to "
-                        + baseName
-                        + (TEMP_DIR_ATTEMPTS - 1)
-                        + ')');
-    }
-
     static class InProcessJsCompRunner extends CommandLineRunner {
 
         private final Compiler compiler;
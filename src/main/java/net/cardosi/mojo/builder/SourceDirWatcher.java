@@ -0,0 +1,184 @@
+package net.cardosi.mojo.builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Event-driven detection of modified java and js (native or not) sources, based on <code>WatchService</code>.
+ * <p>
+ * All the directories under the given source dirs are registered, and the ones created later are registered as soon
+ * as their creation is notified (reporting the sources already inside them as modified).
+ * <p>
+ * If the underlying service loses events (<code>OVERFLOW</code>), the returned <code>Changes</code> are flagged as
+ * such, and the caller is expected to fall back to a full scan.
+ */
+public class SourceDirWatcher implements Closeable {
+
+    private static PathMatcher sourceMatcher = FileSystems.getDefault().getPathMatcher("glob:**/*.{java,js}");
+
+    private final static Logger LOGGER = Logger.getLogger(SourceDirWatcher.class.getName());
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+    public SourceDirWatcher(List<String> sourceDirs) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (String sourceDir : sourceDirs) {
+                registerAll(Paths.get(sourceDir), new HashSet<>());
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        LOGGER.info("Watching " + watchedDirs.size() + " directories");
+    }
+
+    /**
+     * Blocks until some event is notified, and returns all the changes that have been notified so far
+     * @return
+     * @throws InterruptedException
+     */
+    public Changes take() throws InterruptedException {
+        return collect(watchService.take());
+    }
+
+    /**
+     * Waits at most the given time for some event to be notified, and returns all the changes that have been notified so far
+     * @param timeout
+     * @param unit
+     * @return the notified changes, eventually empty
+     * @throws InterruptedException
+     */
+    public Changes poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return collect(watchService.poll(timeout, unit));
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private Changes collect(WatchKey firstKey) {
+        final Changes toReturn = new Changes();
+        WatchKey key = firstKey;
+        try {
+            while (key != null) {
+                processEvents(key, toReturn);
+                // drain whatever has already been queued
+                key = watchService.poll();
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.warning("Watch service closed");
+        }
+        return toReturn;
+    }
+
+    private void processEvents(WatchKey key, Changes toPopulate) {
+        final Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                toPopulate.overflow = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            final Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerAll(path, toPopulate.modifiedSources);
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to watch " + path + ": " + e.getMessage());
+                    toPopulate.overflow = true;
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                if (sourceMatcher.matches(path)) {
+                    toPopulate.deletedSources.add(path);
+                }
+            } else if (sourceMatcher.matches(path)) {
+                toPopulate.modifiedSources.add(path);
+            }
+        }
+        if (!key.reset()) {
+            // directory not accessible anymore
+            watchedDirs.remove(key);
+        }
+    }
+
+    /**
+     * Register the given directory and all its sub-directories, adding the sources found inside them to the given <code>Set</code>
+     * @param root
+     * @param toPopulate
+     * @throws IOException
+     */
+    private void registerAll(Path root, Set<Path> toPopulate) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    watchedDirs.put(path.register(watchService,
+                                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                                  StandardWatchEventKinds.ENTRY_MODIFY,
+                                                  StandardWatchEventKinds.ENTRY_DELETE), path);
+                } else if (sourceMatcher.matches(path)) {
+                    toPopulate.add(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * The changes notified by the <code>WatchService</code>
+     */
+    public static class Changes {
+
+        private final Set<Path> modifiedSources = new HashSet<>();
+        private final Set<Path> deletedSources = new HashSet<>();
+        private boolean overflow;
+
+        /**
+         * Returns the created or modified java and js files
+         */
+        public Set<Path> getModifiedSources() {
+            return modifiedSources;
+        }
+
+        /**
+         * Returns the deleted java and js files (they could have been re-created afterward, e.g. by editors saving through a temporary file)
+         */
+        public Set<Path> getDeletedSources() {
+            return deletedSources;
+        }
+
+        /**
+         * Returns <code>true</code> if some event has been lost, so that a full scan is required
+         */
+        public boolean isOverflow() {
+            return overflow;
+        }
+
+        public boolean isEmpty() {
+            return modifiedSources.isEmpty() && deletedSources.isEmpty() && !overflow;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <code>JsZipCache</code> backed by a directory, e.g. on a shared or network file system.
+ * <p>
+ * Entries are written to a temporary file and then moved in place, so that concurrent readers never see partial ones.
+ */
+public class DirectoryJsZipCache implements JsZipCache {
+
+    private final Path directory;
+
+    public DirectoryJsZipCache(File directory) throws IOException {
+        this.directory = Files.createDirectories(directory.toPath());
+    }
+
+    @Override
+    public boolean fetch(String name, Path target) throws IOException {
+        final Path entry = directory.resolve(name);
+        if (!Files.isRegularFile(entry)) {
+            return false;
+        }
+        final Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), name, ".tmp");
+        try {
+            Files.copy(entry, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            // removed in the meantime
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    @Override
+    public void store(String name, Path source) throws IOException {
+        final Path entry = directory.resolve(name);
+        if (Files.exists(entry)) {
+            return; // same name, same content
+        }
+        final Path temp = Files.createTempFile(directory, name, ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package net.cardosi.mojo.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <code>JsZipCache</code> backed by an HTTP server: entries are retrieved with <code>GET</code> and stored with
+ * <code>PUT</code> at <b>baseUrl/name</b> (any server supporting them, e.g. a WebDAV share or a generic
+ * artifact repository, will do).
+ */
+public class HttpJsZipCache implements JsZipCache {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    private final String baseUrl;
+
+    public HttpJsZipCache(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public boolean fetch(String name, Path target) throws IOException {
+        final HttpURLConnection connection = openConnection(name);
+        try {
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                discardErrorStream(connection);
+                return false;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + responseCode + " fetching " + connection.getURL());
+            }
+            final Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), name, ".tmp");
+            try {
+                try (InputStream input = connection.getInputStream()) {
+                    Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void store(String name, Path source) throws IOException {
+        final HttpURLConnection connection = openConnection(name);
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(Files.size(source));
+            connection.setRequestProperty("Content-Type", "application/zip");
+            try (OutputStream output = connection.getOutputStream()) {
+                Files.copy(source, output);
+            }
+            final int responseCode = connection.getResponseCode();
+            if (responseCode / 100 != 2) {
+                throw new IOException("Unexpected response " + responseCode + " storing " + connection.getURL());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+
+    /**
+     * Read the (usually empty) body of an error response, so that the underlying connection may be reused
+     * @param connection
+     */
+    private static void discardErrorStream(HttpURLConnection connection) throws IOException {
+        try (InputStream error = connection.getErrorStream()) {
+            if (error != null) {
+                final byte[] buffer = new byte[1024];
+                while (error.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(String name) throws IOException {
+        final URL url = new URL(baseUrl + URLEncoder.encode(name, StandardCharsets.UTF_8.name()).replace("+", "%20"));
+        final HttpURLConnection toReturn = (HttpURLConnection) url.openConnection();
+        toReturn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        toReturn.setReadTimeout(READ_TIMEOUT_MILLIS);
+        toReturn.setUseCaches(false);
+        return toReturn;
+    }
+}
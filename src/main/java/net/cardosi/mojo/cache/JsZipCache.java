@@ -0,0 +1,31 @@
+package net.cardosi.mojo.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Shared cache of the jszips transpiled from dependencies, looked up before transpiling a dependency, and populated
+ * after that.
+ * <p>
+ * Entries are identified by their name in the local jszip cache, that already contains the key of everything affecting
+ * their content, so they never need to be invalidated.
+ */
+public interface JsZipCache {
+
+    /**
+     * Copy the entry with the given name, if present, to the given <code>Path</code>
+     * @param name
+     * @param target
+     * @return <code>true</code> if the entry has been found and copied
+     * @throws IOException
+     */
+    boolean fetch(String name, Path target) throws IOException;
+
+    /**
+     * Store the given file as the entry with the given name
+     * @param name
+     * @param source
+     * @throws IOException
+     */
+    void store(String name, Path source) throws IOException;
+}
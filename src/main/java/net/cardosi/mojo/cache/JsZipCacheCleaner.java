@@ -0,0 +1,139 @@
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a jszip cache directory within a maximum size, evicting the least recently used entries.
+ * <p>
+ * Entries are the <b>.js.zip</b> files of the directory, with their <b>.bytecode.jar</b> and <b>.failed</b> markers:
+ * their modification time is used as last access time, and it is updated with {@link #touch(File)} whenever an already
+ * existing entry is reused.
+ * <p>
+ * Leftovers of builds, i.e. <b>.tmp</b> files of crashed ones and <b>.lock</b> files (see {@link JsZipCacheLock}),
+ * are deleted once not modified for {@link #STALE_AGE}.
+ */
+public class JsZipCacheCleaner {
+
+    public static final String JSZIP_SUFFIX = ".js.zip";
+    /**
+     * Suffix of the bytecode jars compiled along with the jszips
+     */
+    public static final String BYTECODE_JAR_SUFFIX = ".bytecode.jar";
+    /**
+     * Suffix of the markers of the jszips that failed to be built
+     */
+    public static final String FAILED_SUFFIX = ".failed";
+    /**
+     * Suffix of the files being written, before they are atomically moved in place
+     */
+    public static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Age, in milliseconds, of temporary and lock files after which they are considered leftovers
+     */
+    public static final long STALE_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private final static Logger LOGGER = Logger.getLogger(JsZipCacheCleaner.class.getName());
+
+    private final File directory;
+    private final long maxSize;
+
+    public JsZipCacheCleaner(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Mark the given entry as just used
+     * @param entry
+     */
+    public static void touch(File entry) {
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            LOGGER.fine("Failed to update last access of " + entry);
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the total size of the directory is within the maximum one
+     * @param inUse the entries used by the current build, never evicted
+     * @return the evicted entries
+     */
+    public List<File> clean(Set<File> inUse) {
+        deleteStale();
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(JSZIP_SUFFIX) || name.endsWith(BYTECODE_JAR_SUFFIX) || name.endsWith(JSZIP_SUFFIX + FAILED_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        // read attributes once, since they may change while sorting
+        final List<Entry> entries = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : files) {
+            final Entry entry = new Entry(file.getAbsoluteFile(), file.length(), file.lastModified());
+            entries.add(entry);
+            totalSize += entry.size;
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.lastModified));
+        final List<File> toReturn = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            if (inUse.contains(entry.file)) {
+                continue;
+            }
+            if (entry.file.delete() || !entry.file.exists()) {
+                totalSize -= entry.size;
+                toReturn.add(entry.file);
+            } else {
+                LOGGER.warning("Failed to evict " + entry.file);
+            }
+        }
+        if (!toReturn.isEmpty()) {
+            LOGGER.info("Evicted " + toReturn.size() + " jszips from " + directory + ", " + totalSize / 1024 / 1024 + " MB left");
+        }
+        return toReturn;
+    }
+
+    /**
+     * Delete the temporary and lock files not modified since {@link #STALE_AGE}
+     */
+    private void deleteStale() {
+        final long staleBefore = System.currentTimeMillis() - STALE_AGE;
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX) || name.endsWith(JsZipCacheLock.LOCK_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            if (file.lastModified() < staleBefore) {
+                if (file.delete()) {
+                    deleted++;
+                } else if (file.exists()) {
+                    LOGGER.warning("Failed to delete stale " + file);
+                }
+            }
+        }
+        if (deleted > 0) {
+            LOGGER.info("Deleted " + deleted + " stale temporary and lock files from " + directory);
+        }
+    }
+
+    private static class Entry {
+
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a single entry of a jszip cache directory, held while the entry is built, so that concurrent builders
+ * (threads of this process or other processes, e.g. parallel CI jobs) wait for it instead of building it again.
+ * <p>
+ * It is a lock on a <b>.lock</b> file next to the entry. The file is kept when the lock is released, since deleting it
+ * would let a waiter, that already opened it, lock an unlinked file, while others lock a new one: stale lock files are
+ * removed by {@link JsZipCacheCleaner}, and a lock is acquired only once the locked file is verified to be still the
+ * one on disk. Entries must still be written atomically, since the lock only avoids duplicated work: in the worst case
+ * an entry is built twice, but never seen half-written.
+ */
+public class JsZipCacheLock implements AutoCloseable {
+
+    public static final String LOCK_SUFFIX = ".lock";
+
+    // file locks are held by the whole process, so threads of this process have to be serialized apart
+    private static final Map<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+    private static final Object NO_FILE_KEY = new Object();
+
+    private final ReentrantLock processLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private JsZipCacheLock(ReentrantLock processLock, FileChannel channel, FileLock fileLock) {
+        this.processLock = processLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Acquire the lock on the given entry, waiting until it is released by others
+     * @param entry
+     * @return
+     * @throws IOException
+     */
+    public static JsZipCacheLock acquire(File entry) throws IOException {
+        final Path lockPath = new File(entry.getAbsolutePath() + LOCK_SUFFIX).toPath();
+        final ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(lockPath.toString(), key -> new ReentrantLock());
+        processLock.lock();
+        FileChannel channel = null;
+        try {
+            while (true) {
+                channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                final Object openedKey = getFileKey(lockPath);
+                final FileLock fileLock = channel.lock();
+                // deleted (e.g. by the cleaner) while waiting: lock the one on disk, instead
+                if (openedKey != null && openedKey.equals(getFileKey(lockPath))) {
+                    // the cleaner removes lock files not used for long
+                    lockPath.toFile().setLastModified(System.currentTimeMillis());
+                    return new JsZipCacheLock(processLock, channel, fileLock);
+                }
+                fileLock.release();
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            processLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+            channel.close();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the key identifying the given file on disk, or <code>null</code> if it does not exist
+     * @param path
+     * @return
+     */
+    private static Object getFileKey(Path path) {
+        try {
+            final Object toReturn = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            // without keys (e.g. on Windows) open files can not be deleted, anyway
+            return toReturn != null ? toReturn : NO_FILE_KEY;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -17,6 +17,11 @@ public interface Gwt3Options {
      */
     File getClassesDir();
 
+    /**
+     * Returns a directory where sources generated by annotation processors will be written to
+     */
+    File getGeneratedClassesDir();
+
     boolean isDeclareLegacyNamespaces();
 
     List<String> getBytecodeClasspath();
@@ -43,5 +48,55 @@ public interface Gwt3Options {
 
     String getJsZipCacheDir();
 
+    /**
+     * Returns the maximum size, in bytes, of the jszip cache directory, or <code>0</code> if unbounded
+     */
+    long getJsZipCacheMaxSize();
+
+    /**
+     * Returns <code>true</code> if dependencies that already failed to be transpiled with the same inputs should be transpiled again
+     */
+    boolean isRetryFailedDependencies();
+
+    /**
+     * Returns the directory or the http(s) url of the shared jszip cache, or <code>null</code> if none is used
+     */
+    String getSharedJsZipCache();
+
+    /**
+     * Returns <code>true</code> if transpiled jszips should be stored to the shared jszip cache
+     */
+    boolean isStoreToSharedJsZipCache();
+
     String getOutputJsPathDir();
+
+    /**
+     * Returns <code>true</code> if source changes should be detected through file system events instead of polling
+     */
+    boolean isUseFileWatcher();
+
+    /**
+     * Returns <code>true</code> if compiled classes should be kept in memory, and written to the classes directory in background
+     */
+    boolean isInMemoryClassOutput();
+
+    /**
+     * Returns the milliseconds without further changes to wait before starting a compilation
+     */
+    long getChangesQuietPeriod();
+
+    /**
+     * Returns the maximum milliseconds to wait for changes to settle before starting a compilation
+     */
+    long getChangesMaxWait();
+
+    /**
+     * Returns the number of threads used to transpile dependency jars
+     */
+    int getDependencyThreads();
+
+    /**
+     * Returns the number of threads used to compile and transpile the modules
+     */
+    int getModuleThreads();
 }
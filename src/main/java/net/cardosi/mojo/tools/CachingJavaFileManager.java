@@ -0,0 +1,301 @@
+package net.cardosi.mojo.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * <code>JavaFileManager</code> that keeps, across compilations, the listings of the classpath packages found in jars, so
+ * that javac does not have to look them up in every jar again at each compilation.
+ * <p>
+ * Jars are considered unchanged while their size and modification time do not move: as soon as any of them changes,
+ * cached listings are discarded, and jars are opened again. Classpath directories (e.g. the classes one, which is written
+ * at each compilation) are listed each time. Listings are merged in classpath order, since javac keeps the first class
+ * file found for a name.
+ * <p>
+ * If a {@link ClassOutputStore} is given, class files are written to it instead of the classes directory, and the ones
+ * it contains are listed at the position of the classes directory, in place of their copies (if any) found there.
+ */
+public class CachingJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private final StandardJavaFileManager directoryFileManager;
+    private final ClassOutputStore classOutputStore;
+    private final List<Path> classpath;
+    private final List<File> jars;
+    private final List<Path> directories;
+    // listings of each jar, by normalized absolute path
+    private final Map<ListKey, Map<Path, List<JavaFileObject>>> jarListings = new HashMap<>();
+    private Map<File, List<Long>> jarStamps;
+    private Consumer<JavaFileObject> sourceOutputListener;
+
+    /**
+     * @param fileManager the file manager to forward to, with the full classpath
+     * @param directoryFileManager an additional file manager, used to list classpath directories
+     * @param classpath
+     * @throws IOException
+     */
+    public CachingJavaFileManager(StandardJavaFileManager fileManager, StandardJavaFileManager directoryFileManager, List<File> classpath) throws IOException {
+        this(fileManager, directoryFileManager, classpath, null);
+    }
+
+    /**
+     * @param fileManager the file manager to forward to, with the full classpath
+     * @param directoryFileManager an additional file manager, used to list classpath directories
+     * @param classpath
+     * @param classOutputStore where class files are written, or <code>null</code> to write them to the classes directory
+     * @throws IOException
+     */
+    public CachingJavaFileManager(StandardJavaFileManager fileManager, StandardJavaFileManager directoryFileManager, List<File> classpath, ClassOutputStore classOutputStore) throws IOException {
+        super(fileManager);
+        this.directoryFileManager = directoryFileManager;
+        this.classOutputStore = classOutputStore;
+        this.classpath = classpath.stream().map(CachingJavaFileManager::toPath).collect(Collectors.toList());
+        this.jars = classpath.stream().filter(File::isFile).collect(Collectors.toList());
+        final List<File> directoryFiles = classpath.stream().filter(file -> !file.isFile()).collect(Collectors.toList());
+        this.directories = directoryFiles.stream().map(CachingJavaFileManager::toPath).collect(Collectors.toList());
+        directoryFileManager.setLocation(StandardLocation.CLASS_PATH, directoryFiles);
+        jarStamps = getJarStamps();
+    }
+
+    /**
+     * Discard the cached listings, and close the opened jars, if any jar changed since last invocation
+     * @return <code>true</code> if something changed
+     * @throws IOException
+     */
+    public boolean invalidateChanged() throws IOException {
+        final Map<File, List<Long>> currentJarStamps = getJarStamps();
+        if (currentJarStamps.equals(jarStamps)) {
+            return false;
+        }
+        jarStamps = currentJarStamps;
+        jarListings.clear();
+        // opened again on next use
+        fileManager.close();
+        return true;
+    }
+
+    /**
+     * Set the listener notified of each source opened for output (i.e. written by annotation processors), or
+     * <code>null</code> for none
+     * @param sourceOutputListener
+     */
+    public void setSourceOutputListener(Consumer<JavaFileObject> sourceOutputListener) {
+        this.sourceOutputListener = sourceOutputListener;
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+        if (location != StandardLocation.CLASS_PATH) {
+            return super.list(location, packageName, kinds, recurse);
+        }
+        final ListKey key = new ListKey(packageName, kinds, recurse);
+        Map<Path, List<JavaFileObject>> byJar = jarListings.get(key);
+        if (byJar == null) {
+            byJar = new HashMap<>();
+            for (JavaFileObject listed : super.list(location, packageName, kinds, recurse)) {
+                // directories are listed apart
+                if (!"file".equals(listed.toUri().getScheme())) {
+                    byJar.computeIfAbsent(getJar(listed), jar -> new ArrayList<>()).add(listed);
+                }
+            }
+            jarListings.put(key, byJar);
+        }
+        final Set<String> storedClasses = classOutputStore != null && kinds.contains(JavaFileObject.Kind.CLASS) ? classOutputStore.list(packageName, recurse) : Collections.emptySet();
+        final Path storedClassesDir = storedClasses.isEmpty() ? null : toPath(classOutputStore.getClassesDir());
+        final Map<Path, List<JavaFileObject>> byDirectory = new HashMap<>();
+        if (!directories.isEmpty()) {
+            for (JavaFileObject listed : directoryFileManager.list(location, packageName, kinds, recurse)) {
+                final Path directory = getDirectory(listed);
+                if (storedClasses.isEmpty() || !Objects.equals(directory, storedClassesDir) || listed.getKind() != JavaFileObject.Kind.CLASS
+                        || !storedClasses.contains(directoryFileManager.inferBinaryName(location, listed))) {
+                    byDirectory.computeIfAbsent(directory, dir -> new ArrayList<>()).add(listed);
+                }
+            }
+        }
+        final List<JavaFileObject> toReturn = new ArrayList<>();
+        if (storedClassesDir != null && !classpath.contains(storedClassesDir)) {
+            storedClasses.forEach(binaryName -> toReturn.add(new StoredClassFile(binaryName)));
+        }
+        for (Path entry : classpath) {
+            if (entry.equals(storedClassesDir)) {
+                storedClasses.forEach(binaryName -> toReturn.add(new StoredClassFile(binaryName)));
+            }
+            toReturn.addAll(byDirectory.getOrDefault(entry, Collections.emptyList()));
+            toReturn.addAll(byJar.getOrDefault(entry, Collections.emptyList()));
+        }
+        // not matched to any classpath entry
+        toReturn.addAll(byDirectory.getOrDefault(null, Collections.emptyList()));
+        toReturn.addAll(byJar.getOrDefault(null, Collections.emptyList()));
+        return toReturn;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof StoredClassFile) {
+            return ((StoredClassFile) file).binaryName;
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof StoredClassFile || b instanceof StoredClassFile) {
+            return a.toUri().equals(b.toUri());
+        }
+        return super.isSameFile(a, b);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+        if (classOutputStore != null && location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS) {
+            return new StoredClassFile(className);
+        }
+        final JavaFileObject toReturn = super.getJavaFileForOutput(location, className, kind, sibling);
+        if (sourceOutputListener != null && location == StandardLocation.SOURCE_OUTPUT && kind == JavaFileObject.Kind.SOURCE) {
+            sourceOutputListener.accept(toReturn);
+        }
+        return toReturn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            directoryFileManager.close();
+        }
+    }
+
+    /**
+     * Returns the normalized absolute path of the jar containing the given file, or <code>null</code> if it is not known
+     * @param fromJar
+     * @return
+     */
+    private static Path getJar(JavaFileObject fromJar) {
+        final URI uri = fromJar.toUri();
+        final String schemeSpecificPart = uri.getSchemeSpecificPart();
+        final int separator = schemeSpecificPart != null ? schemeSpecificPart.indexOf("!/") : -1;
+        if (!"jar".equals(uri.getScheme()) || separator < 0) {
+            return null;
+        }
+        try {
+            return toPath(new File(URI.create(schemeSpecificPart.substring(0, separator))));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the classpath directory containing the given file (the innermost one, if they are nested), or <code>null</code> if not found
+     * @param fromDirectory
+     * @return
+     */
+    private Path getDirectory(JavaFileObject fromDirectory) {
+        final Path path = toPath(new File(fromDirectory.toUri()));
+        Path toReturn = null;
+        for (Path directory : directories) {
+            if (path.startsWith(directory) && (toReturn == null || directory.startsWith(toReturn))) {
+                toReturn = directory;
+            }
+        }
+        return toReturn;
+    }
+
+    private static Path toPath(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    private Map<File, List<Long>> getJarStamps() {
+        final Map<File, List<Long>> toReturn = new HashMap<>();
+        for (File jar : jars) {
+            toReturn.put(jar, Arrays.asList(jar.length(), jar.lastModified()));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Class file read from, and written to, the <code>ClassOutputStore</code>
+     */
+    private class StoredClassFile extends SimpleJavaFileObject {
+
+        private final String binaryName;
+
+        private StoredClassFile(String binaryName) {
+            super(URI.create("stored:///" + binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            final byte[] bytes = classOutputStore.get(binaryName);
+            if (bytes == null) {
+                throw new FileNotFoundException(binaryName);
+            }
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    classOutputStore.put(binaryName, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static class ListKey {
+
+        private final String packageName;
+        private final Set<JavaFileObject.Kind> kinds;
+        private final boolean recurse;
+
+        private ListKey(String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) {
+            this.packageName = packageName;
+            this.kinds = kinds.isEmpty() ? EnumSet.noneOf(JavaFileObject.Kind.class) : EnumSet.copyOf(kinds);
+            this.recurse = recurse;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ListKey)) {
+                return false;
+            }
+            ListKey listKey = (ListKey) o;
+            return recurse == listKey.recurse && packageName.equals(listKey.packageName) && kinds.equals(listKey.kinds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(packageName, kinds, recurse);
+        }
+    }
+}
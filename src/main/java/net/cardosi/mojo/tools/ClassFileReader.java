@@ -0,0 +1,373 @@
+package net.cardosi.mojo.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Minimal reader of the .class file format. It retrieves
+ * <ul>
+ * <li>the types referenced by the compiled class</li>
+ * <li>if it declares compile-time constants (which javac inlines in the referencing classes, so they do not show up as references there)</li>
+ * <li>a fingerprint of its API, i.e. of everything but private/synthetic members and method bodies</li>
+ * </ul>
+ * Types are returned as binary names (e.g. <code>com.foo.Outer$Inner</code>).
+ */
+public class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    // public, final, interface, abstract, annotation, enum
+    private static final int CLASS_API_FLAGS = 0x0001 | 0x0010 | 0x0200 | 0x0400 | 0x2000 | 0x4000;
+    // public, protected, static, final, volatile/bridge, transient/varargs, native, abstract, enum
+    private static final int MEMBER_API_FLAGS = 0x0001 | 0x0004 | 0x0008 | 0x0010 | 0x0040 | 0x0080 | 0x0100 | 0x0400 | 0x4000;
+    // public, protected, static, final, interface, abstract, annotation, enum
+    private static final int INNER_CLASS_API_FLAGS = 0x0001 | 0x0004 | 0x0008 | 0x0010 | 0x0200 | 0x0400 | 0x2000 | 0x4000;
+
+    // Matches object types inside field/method descriptors and generic signatures
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([^;<>\\[\\s().]+)[;<]");
+
+    private final String className;
+    private final Set<String> referencedTypes;
+    private final Set<String> superTypes;
+    private final boolean declaringConstants;
+    private final String apiFingerprint;
+
+    private ClassFileReader(String className, Set<String> referencedTypes, Set<String> superTypes, boolean declaringConstants, String apiFingerprint) {
+        this.className = className;
+        this.referencedTypes = Collections.unmodifiableSet(referencedTypes);
+        this.superTypes = Collections.unmodifiableSet(superTypes);
+        this.declaringConstants = declaringConstants;
+        this.apiFingerprint = apiFingerprint;
+    }
+
+    public static ClassFileReader read(Path classFile) throws IOException {
+        return read(Files.readAllBytes(classFile));
+    }
+
+    public static ClassFileReader read(byte[] bytes) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            input.readUnsignedShort(); // minor_version
+            input.readUnsignedShort(); // major_version
+            ConstantPool constantPool = new ConstantPool(input);
+            int accessFlags = input.readUnsignedShort();
+            String className = constantPool.getClassName(input.readUnsignedShort());
+            Set<String> referencedTypes = constantPool.getReferencedTypes();
+            referencedTypes.remove(className);
+            Set<String> superTypes = new HashSet<>();
+            int superClassIndex = input.readUnsignedShort();
+            if (superClassIndex != 0) {
+                superTypes.add(constantPool.getClassName(superClassIndex));
+            }
+            int interfacesCount = input.readUnsignedShort();
+            for (int i = 0; i < interfacesCount; i++) {
+                superTypes.add(constantPool.getClassName(input.readUnsignedShort()));
+            }
+            StringBuilder api = new StringBuilder();
+            api.append(accessFlags & CLASS_API_FLAGS).append(' ').append(className).append(" extends ").append(new TreeSet<>(superTypes)).append('\n');
+            List<String> members = new ArrayList<>();
+            boolean declaringConstants = readMembers(input, constantPool, className, "field ", members);
+            readMembers(input, constantPool, className, "method ", members);
+            Collections.sort(members);
+            members.forEach(member -> api.append(member).append('\n'));
+            api.append(readAttributes(input, constantPool, className));
+            return new ClassFileReader(className, referencedTypes, superTypes, declaringConstants, DigestUtils.md5Hex(api.toString()));
+        }
+    }
+
+    /**
+     * Returns the binary name of the read class
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the binary names of all the types referenced by the read class (itself excluded)
+     */
+    public Set<String> getReferencedTypes() {
+        return referencedTypes;
+    }
+
+    /**
+     * Returns the binary names of the direct superclass and interfaces of the read class
+     */
+    public Set<String> getSuperTypes() {
+        return superTypes;
+    }
+
+    /**
+     * Returns <code>true</code> if the read class declares non-private compile-time constants
+     */
+    public boolean isDeclaringConstants() {
+        return declaringConstants;
+    }
+
+    /**
+     * Returns a fingerprint of the API of the read class: it changes only if something visible from other classes
+     * (signatures, non-private members, constant values, annotations) changes, and not for method bodies
+     */
+    public String getApiFingerprint() {
+        return apiFingerprint;
+    }
+
+    /**
+     * Read fields or methods, adding the description of the non-private, non-synthetic, ones to the given <code>List</code>
+     * @return <code>true</code> if any of the members has a <code>ConstantValue</code>
+     */
+    private static boolean readMembers(DataInputStream input, ConstantPool constantPool, String className, String kind, List<String> toPopulate) throws IOException {
+        boolean declaringConstants = false;
+        int membersCount = input.readUnsignedShort();
+        for (int i = 0; i < membersCount; i++) {
+            int accessFlags = input.readUnsignedShort();
+            String name = constantPool.getUtf8(input.readUnsignedShort());
+            String descriptor = constantPool.getUtf8(input.readUnsignedShort());
+            String attributes = readAttributes(input, constantPool, className);
+            if ((accessFlags & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0) {
+                toPopulate.add(kind + (accessFlags & MEMBER_API_FLAGS) + ' ' + name + ' ' + descriptor + ' ' + attributes);
+                declaringConstants |= attributes.contains("ConstantValue=");
+            }
+        }
+        return declaringConstants;
+    }
+
+    /**
+     * Read the attributes at the current position, returning a description of the ones that are part of the API
+     * @param className the binary name of the read class, to tell its own <code>InnerClasses</code> entries from the referenced ones
+     */
+    private static String readAttributes(DataInputStream input, ConstantPool constantPool, String className) throws IOException {
+        StringBuilder toReturn = new StringBuilder();
+        int attributesCount = input.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = constantPool.getUtf8(input.readUnsignedShort());
+            int length = input.readInt();
+            switch (attributeName) {
+                case "ConstantValue":
+                    toReturn.append(attributeName).append('=').append(constantPool.getConstant(input.readUnsignedShort())).append(';');
+                    break;
+                case "Signature":
+                    toReturn.append(attributeName).append('=').append(constantPool.getUtf8(input.readUnsignedShort())).append(';');
+                    break;
+                case "Exceptions":
+                    toReturn.append(attributeName).append('=');
+                    int exceptionsCount = input.readUnsignedShort();
+                    for (int j = 0; j < exceptionsCount; j++) {
+                        toReturn.append(constantPool.getClassName(input.readUnsignedShort())).append(',');
+                    }
+                    toReturn.append(';');
+                    break;
+                case "RuntimeVisibleAnnotations":
+                case "RuntimeInvisibleAnnotations":
+                    toReturn.append(attributeName).append('=');
+                    int annotationsCount = input.readUnsignedShort();
+                    for (int j = 0; j < annotationsCount; j++) {
+                        readAnnotation(input, constantPool, toReturn);
+                    }
+                    toReturn.append(';');
+                    break;
+                case "RuntimeVisibleParameterAnnotations":
+                case "RuntimeInvisibleParameterAnnotations":
+                    toReturn.append(attributeName).append('=');
+                    int parametersCount = input.readUnsignedByte();
+                    for (int j = 0; j < parametersCount; j++) {
+                        toReturn.append('[');
+                        int parameterAnnotationsCount = input.readUnsignedShort();
+                        for (int k = 0; k < parameterAnnotationsCount; k++) {
+                            readAnnotation(input, constantPool, toReturn);
+                        }
+                        toReturn.append(']');
+                    }
+                    toReturn.append(';');
+                    break;
+                case "InnerClasses":
+                    // the actual access flags of nested classes (e.g. protected, static) are only recorded here
+                    List<String> innerClasses = new ArrayList<>();
+                    int classesCount = input.readUnsignedShort();
+                    for (int j = 0; j < classesCount; j++) {
+                        int innerClassIndex = input.readUnsignedShort();
+                        int outerClassIndex = input.readUnsignedShort();
+                        input.readUnsignedShort(); // inner_name_index
+                        int innerAccessFlags = input.readUnsignedShort();
+                        String innerClassName = constantPool.getClassName(innerClassIndex);
+                        boolean declared = outerClassIndex != 0 && className.equals(constantPool.getClassName(outerClassIndex)) && (innerAccessFlags & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0;
+                        // entries of other, merely referenced, nested classes are not part of the API
+                        if (declared || className.equals(innerClassName)) {
+                            innerClasses.add((innerAccessFlags & INNER_CLASS_API_FLAGS) + " " + innerClassName);
+                        }
+                    }
+                    if (!innerClasses.isEmpty()) {
+                        Collections.sort(innerClasses);
+                        toReturn.append(attributeName).append('=');
+                        innerClasses.forEach(innerClass -> toReturn.append(innerClass).append(','));
+                        toReturn.append(';');
+                    }
+                    break;
+                case "AnnotationDefault":
+                    toReturn.append(attributeName).append('=');
+                    readElementValue(input, constantPool, toReturn);
+                    toReturn.append(';');
+                    break;
+                default:
+                    input.skipBytes(length);
+            }
+        }
+        return toReturn.toString();
+    }
+
+    private static void readAnnotation(DataInputStream input, ConstantPool constantPool, StringBuilder toPopulate) throws IOException {
+        toPopulate.append('@').append(constantPool.getUtf8(input.readUnsignedShort())).append('(');
+        int pairsCount = input.readUnsignedShort();
+        for (int i = 0; i < pairsCount; i++) {
+            toPopulate.append(constantPool.getUtf8(input.readUnsignedShort())).append('=');
+            readElementValue(input, constantPool, toPopulate);
+            toPopulate.append(',');
+        }
+        toPopulate.append(')');
+    }
+
+    private static void readElementValue(DataInputStream input, ConstantPool constantPool, StringBuilder toPopulate) throws IOException {
+        char tag = (char) input.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                toPopulate.append(constantPool.getUtf8(input.readUnsignedShort())).append('.').append(constantPool.getUtf8(input.readUnsignedShort()));
+                break;
+            case 'c':
+                toPopulate.append(constantPool.getUtf8(input.readUnsignedShort()));
+                break;
+            case '@':
+                readAnnotation(input, constantPool, toPopulate);
+                break;
+            case '[':
+                toPopulate.append('[');
+                int valuesCount = input.readUnsignedShort();
+                for (int i = 0; i < valuesCount; i++) {
+                    readElementValue(input, constantPool, toPopulate);
+                    toPopulate.append(',');
+                }
+                toPopulate.append(']');
+                break;
+            default: // B C D F I J S Z s
+                toPopulate.append(tag).append(constantPool.getConstant(input.readUnsignedShort()));
+        }
+    }
+
+    private static String toBinaryName(String internalName) {
+        return internalName.replace('/', '.');
+    }
+
+    /**
+     * The resolved constant pool of a class file
+     */
+    private static class ConstantPool {
+
+        private final String[] utf8s;
+        private final int[] classes;
+        private final int[] strings;
+        private final Object[] numbers;
+
+        ConstantPool(DataInputStream input) throws IOException {
+            int constantPoolCount = input.readUnsignedShort();
+            utf8s = new String[constantPoolCount];
+            classes = new int[constantPoolCount];
+            strings = new int[constantPoolCount];
+            numbers = new Object[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = input.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8s[i] = input.readUTF();
+                        break;
+                    case 7: // Class
+                        classes[i] = input.readUnsignedShort();
+                        break;
+                    case 8: // String
+                        strings[i] = input.readUnsignedShort();
+                        break;
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        input.readUnsignedShort();
+                        break;
+                    case 15: // MethodHandle
+                        input.readUnsignedByte();
+                        input.readUnsignedShort();
+                        break;
+                    case 3: // Integer
+                        numbers[i] = input.readInt();
+                        break;
+                    case 4: // Float
+                        numbers[i] = input.readFloat();
+                        break;
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        input.readInt();
+                        break;
+                    case 5: // Long
+                        numbers[i] = input.readLong();
+                        i++; // takes two slots
+                        break;
+                    case 6: // Double
+                        numbers[i] = input.readDouble();
+                        i++; // takes two slots
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        String getUtf8(int index) {
+            return utf8s[index];
+        }
+
+        String getClassName(int index) {
+            return toBinaryName(utf8s[classes[index]]);
+        }
+
+        Object getConstant(int index) {
+            if (numbers[index] != null) {
+                return numbers[index];
+            }
+            return strings[index] != 0 ? utf8s[strings[index]] : utf8s[index];
+        }
+
+        /**
+         * Returns all the types named in the pool, either as class entries or inside descriptors, signatures and annotation types
+         */
+        Set<String> getReferencedTypes() {
+            Set<String> toReturn = new HashSet<>();
+            for (int i = 1; i < utf8s.length; i++) {
+                if (classes[i] != 0 && !utf8s[classes[i]].startsWith("[")) {
+                    toReturn.add(toBinaryName(utf8s[classes[i]]));
+                } else if (utf8s[i] != null || classes[i] != 0) {
+                    // array classes are in descriptor form, too
+                    Matcher matcher = DESCRIPTOR_TYPE.matcher(utf8s[classes[i] != 0 ? classes[i] : i]);
+                    while (matcher.find()) {
+                        toReturn.add(toBinaryName(matcher.group(1)));
+                    }
+                }
+            }
+            return toReturn;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps in memory the class files written by javac, so that the following compilations read them from here, and
+ * writes them to the classes directory in background, for the tools that read it from disk (e.g. the transpiler).
+ * <p>
+ * Writes (and deletions) happen on a single thread, in the same order as they were requested: {@link #flush()} waits
+ * for all the ones requested so far. No lock is held while writing, so that javac never waits for the disk.
+ */
+public class ClassOutputStore {
+
+    private final static Logger LOGGER = Logger.getLogger(ClassOutputStore.class.getName());
+
+    private final File classesDirFile;
+    private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread toReturn = new Thread(runnable, "j2cl-class-writer");
+        toReturn.setDaemon(true);
+        return toReturn;
+    });
+
+    /**
+     * @param classesDirFile the directory where class files are written
+     */
+    public ClassOutputStore(File classesDirFile) {
+        this.classesDirFile = classesDirFile;
+    }
+
+    /**
+     * Returns the directory where class files are written
+     * @return
+     */
+    public File getClassesDir() {
+        return classesDirFile;
+    }
+
+    /**
+     * Store the class file of the given binary name, and schedule its write to disk
+     * @param binaryName
+     * @param bytes
+     */
+    public void put(String binaryName, byte[] bytes) {
+        classes.put(binaryName, bytes);
+        writer.execute(() -> write(binaryName, bytes));
+    }
+
+    /**
+     * Returns the class file of the given binary name, or <code>null</code> if it has not been stored
+     * @param binaryName
+     * @return
+     */
+    public byte[] get(String binaryName) {
+        return classes.get(binaryName);
+    }
+
+    /**
+     * Returns the binary names of the stored classes of the given package (and of its subpackages, if <b>recurse</b>)
+     * @param packageName
+     * @param recurse
+     * @return
+     */
+    public Set<String> list(String packageName, boolean recurse) {
+        final String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        return classes.keySet().stream()
+                .filter(binaryName -> binaryName.startsWith(prefix) && (recurse || binaryName.indexOf('.', prefix.length()) < 0))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Discard the class file of the given binary name from memory, and schedule its deletion from disk
+     * @param binaryName
+     */
+    public void remove(String binaryName) {
+        classes.remove(binaryName);
+        // after the writes already scheduled
+        writer.execute(() -> delete(binaryName));
+    }
+
+    /**
+     * Wait for all the scheduled writes to complete
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Complete the scheduled writes, and stop the writer
+     */
+    public void close() {
+        flush();
+        writer.shutdown();
+    }
+
+    private void write(String binaryName, byte[] bytes) {
+        // replaced or removed in the meantime: the following write, or deletion, is already scheduled
+        if (classes.get(binaryName) != bytes) {
+            return;
+        }
+        final Path classPath = getClassPath(binaryName);
+        try {
+            Files.createDirectories(classPath.getParent());
+            Files.write(classPath, bytes);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to write " + classPath + ": " + e.getMessage());
+        }
+    }
+
+    private void delete(String binaryName) {
+        // stored again in the meantime
+        if (classes.containsKey(binaryName)) {
+            return;
+        }
+        final Path classPath = getClassPath(binaryName);
+        try {
+            Files.deleteIfExists(classPath);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to delete " + classPath + ": " + e.getMessage());
+        }
+    }
+
+    private Path getClassPath(String binaryName) {
+        return new File(classesDirFile, binaryName.replace('.', '/') + ".class").toPath();
+    }
+}
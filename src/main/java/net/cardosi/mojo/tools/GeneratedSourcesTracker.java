@@ -0,0 +1,127 @@
+package net.cardosi.mojo.tools;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.tools.FileObject;
+
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+/**
+ * Records the sources written by annotation processors, together with the sources they have been generated out of.
+ * <p>
+ * Processors run with the <code>ProcessingEnvironment</code> of javac, untouched, since many of them (e.g. the ones
+ * using <code>Trees</code>) do not work with any other: written sources are reported by the <code>JavaFileManager</code>
+ * (see {@link #sourceWritten(FileObject)}), while processing rounds are followed as a <code>TaskListener</code>.
+ * The originating elements given to the <code>Filer</code> are not visible this way, so the originating sources of a
+ * generated one are inferred: they are the sources processed in the same round whose types it references (e.g. the
+ * annotated class of a generated factory), or all of them, if it does not reference any.
+ * <p>
+ * Generated sources are identified by their absolute, normalized, path, as the originating sources.
+ */
+public class GeneratedSourcesTracker implements TaskListener {
+
+    private final static Logger LOGGER = Logger.getLogger(GeneratedSourcesTracker.class.getName());
+
+    // the sources processed in the round each source has been generated in, in generation order
+    private final Map<String, Set<String>> roundSources = new LinkedHashMap<>();
+    private Set<String> currentRoundSources = Collections.emptySet();
+    private Set<String> writtenInRound = new LinkedHashSet<>();
+
+    /**
+     * Start tracking a new compilation of the given sources, discarding what has been recorded so far
+     * @param sourcePaths
+     */
+    public void start(Collection<String> sourcePaths) {
+        roundSources.clear();
+        currentRoundSources = new HashSet<>();
+        sourcePaths.forEach(sourcePath -> currentRoundSources.add(toPath(sourcePath)));
+        writtenInRound = new LinkedHashSet<>();
+    }
+
+    /**
+     * To be invoked when a source is opened for output by an annotation processor
+     * @param generatedSource
+     */
+    public void sourceWritten(FileObject generatedSource) {
+        final String generatedPath = Paths.get(generatedSource.toUri()).toAbsolutePath().normalize().toString();
+        writtenInRound.add(generatedPath);
+        roundSources.put(generatedPath, currentRoundSources);
+    }
+
+    @Override
+    public void started(TaskEvent e) {
+    }
+
+    @Override
+    public void finished(TaskEvent e) {
+        if (e.getKind() == TaskEvent.Kind.ANNOTATION_PROCESSING_ROUND) {
+            // the sources written in a round are the ones processed in the next one
+            currentRoundSources = writtenInRound;
+            writtenInRound = new LinkedHashSet<>();
+        }
+    }
+
+    /**
+     * Returns the originating sources of each source generated since last {@link #start(Collection)}, mapped by
+     * generated source path. Sources generated out of generated ones are mapped to the originating sources of the latter
+     * @param compiledTypes the binary names of the types compiled out of each source
+     * @param classFileReader reads the class file of a compiled type
+     * @return
+     */
+    public Map<String, Set<String>> getOriginatingSources(Map<String, Set<String>> compiledTypes, ClassFileReaderFunction classFileReader) {
+        final Map<String, Set<String>> toReturn = new LinkedHashMap<>();
+        // in generation order, so that the generated sources processed in a round are already resolved
+        roundSources.forEach((generatedPath, processedSources) -> {
+            final Set<String> originatingSources = new HashSet<>();
+            for (String processedSource : getReferencedSources(generatedPath, processedSources, compiledTypes, classFileReader)) {
+                originatingSources.addAll(toReturn.getOrDefault(processedSource, Collections.singleton(processedSource)));
+            }
+            toReturn.put(generatedPath, originatingSources);
+        });
+        return toReturn;
+    }
+
+    /**
+     * Returns the given processed sources declaring types referenced by the given generated one, or all of them if there is none
+     */
+    private static Set<String> getReferencedSources(String generatedPath, Set<String> processedSources, Map<String, Set<String>> compiledTypes, ClassFileReaderFunction classFileReader) {
+        final Set<String> referencedTypes = new HashSet<>();
+        for (String generatedType : compiledTypes.getOrDefault(generatedPath, Collections.emptySet())) {
+            try {
+                referencedTypes.addAll(classFileReader.read(generatedType).getReferencedTypes());
+            } catch (IOException e) {
+                LOGGER.warning("Failed to read " + generatedType + ": " + e.getMessage());
+            }
+        }
+        final Set<String> toReturn = new HashSet<>();
+        for (String processedSource : processedSources) {
+            if (compiledTypes.getOrDefault(processedSource, Collections.emptySet()).stream().anyMatch(referencedTypes::contains)) {
+                toReturn.add(processedSource);
+            }
+        }
+        return toReturn.isEmpty() ? processedSources : toReturn;
+    }
+
+    private static String toPath(String sourcePath) {
+        return Paths.get(sourcePath).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Reads the class file of a compiled type, given its binary name
+     */
+    @FunctionalInterface
+    public interface ClassFileReaderFunction {
+
+        ClassFileReader read(String binaryName) throws IOException;
+    }
+}
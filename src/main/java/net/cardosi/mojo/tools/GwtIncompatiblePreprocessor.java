@@ -2,6 +2,7 @@ package net.cardosi.mojo.tools;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -22,6 +23,8 @@ import com.google.j2cl.tools.gwtincompatible.JavaPreprocessor;
  * annotated with @GwtIncompatible
  */
 public class GwtIncompatiblePreprocessor {
+    private static final byte[] GWT_INCOMPATIBLE = "GwtIncompatible".getBytes(StandardCharsets.US_ASCII);
+
     private final File outputDirectory;
 
     public GwtIncompatiblePreprocessor(File outputDirectory) {
@@ -31,14 +34,55 @@ public class GwtIncompatiblePreprocessor {
         }
     }
 
+    /**
+     * Returns <code>false</code> if the given source content can not contain the <code>@GwtIncompatible</code> annotation,
+     * i.e. it does not even contain its name, so that it does not have to be parsed to be preprocessed
+     * @param content the UTF-8 encoded source
+     * @return
+     */
+    public static boolean mayContainGwtIncompatible(byte[] content) {
+        final int last = content.length - GWT_INCOMPATIBLE.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (content[i] != GWT_INCOMPATIBLE[0]) {
+                continue;
+            }
+            for (int j = 1; j < GWT_INCOMPATIBLE.length; j++) {
+                if (content[i + j] != GWT_INCOMPATIBLE[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
     public List<FileInfo> preprocess(List<FileInfo> unprocessedFiles) throws IOException {
         Problems problems = new Problems();
 
         List<FileInfo> result = new ArrayList<>();
+        // files without @GwtIncompatible are copied as they are
+        List<FileInfo> toPreprocess = new ArrayList<>();
+        for (FileInfo unprocessedFile : unprocessedFiles) {
+            Path sourcePath = Paths.get(unprocessedFile.sourcePath());
+            if (mayContainGwtIncompatible(Files.readAllBytes(sourcePath))) {
+                toPreprocess.add(unprocessedFile);
+            } else {
+                Path originalPath = Paths.get(unprocessedFile.originalPath());
+                Path relativePath = originalPath.getRoot() != null ? originalPath.getRoot().relativize(originalPath) : originalPath;
+                Path targetPath = Paths.get(outputDirectory.toURI()).resolve(relativePath.toString());
+                Files.createDirectories(targetPath.getParent());
+                Files.copy(sourcePath, targetPath);
+                result.add(FileInfo.create(targetPath.toString(), targetPath.toString()));
+            }
+        }
+        if (toPreprocess.isEmpty()) {
+            return result;
+        }
         File processed = File.createTempFile("preprocessed", ".srcjar");
         try (FileSystem out = FrontendUtils.initZipOutput(processed.getAbsolutePath(), new Problems())) {
 
-            JavaPreprocessor.preprocessFiles(unprocessedFiles, out.getPath("/"), problems);
+            JavaPreprocessor.preprocessFiles(toPreprocess, out.getPath("/"), problems);
 
             if (problems.hasErrors()) {
                 throw new IllegalStateException(problems.getErrors().toString());
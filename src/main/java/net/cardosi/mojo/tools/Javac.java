@@ -2,11 +2,19 @@ package net.cardosi.mojo.tools;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.lang.model.util.Elements;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject;
@@ -15,6 +23,9 @@ import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 
 import com.google.j2cl.frontend.FrontendUtils.FileInfo;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 
 /**
  * Runs javac. Set this up with the appropriate classpath, directory for generated sources to be written,
@@ -25,31 +36,149 @@ import com.google.j2cl.frontend.FrontendUtils.FileInfo;
  *
  * Note that incoming sources should already be pre-processed, and while it should be safe to directly
  * j2cl the generated classes, it may be necessary to pre-process them before passing them to j2cl.
+ *
+ * After each compilation, the types generated out of each source file are available through getCompiledTypes(), and
+ * the sources written by annotation processors, with their originating sources, through getGeneratedSources().
+ * Annotation processors are found in the classpath by javac itself, and run with its own ProcessingEnvironment: the
+ * generated sources are tracked through the file manager (see GeneratedSourcesTracker).
+ *
+ * With in-memory class output, class files are kept in a ClassOutputStore and written to classesDirFile in background:
+ * flush() must be invoked before reading classesDirFile from outside (e.g. transpiling). The same ClassOutputStore may
+ * be shared by instances compiling to the same classesDirFile, so that each one sees the classes compiled by the others.
  */
 public class Javac {
 
     List<String> javacOptions;
     JavaCompiler compiler;
     StandardJavaFileManager fileManager;
+    CachingJavaFileManager cachingFileManager;
+    ClassOutputStore classOutputStore;
+    GeneratedSourcesTracker generatedSourcesTracker = new GeneratedSourcesTracker();
+    File classesDirFile;
+    Map<String, Set<String>> compiledTypes = new HashMap<>();
 
     public Javac(File generatedClassesPath, List<File> classpath, File classesDirFile, File bootstrap) throws IOException {
-        javacOptions = Arrays.asList("-implicit:none", "-bootclasspath", bootstrap.toString());
+        this(generatedClassesPath, classpath, classesDirFile, bootstrap, null);
+    }
+
+    public Javac(File generatedClassesPath, List<File> classpath, File classesDirFile, File bootstrap, ClassOutputStore classOutputStore) throws IOException {
+        this.classesDirFile = classesDirFile;
+        this.classOutputStore = classOutputStore;
+        javacOptions = getOptions(bootstrap);
         compiler = ToolProvider.getSystemJavaCompiler();
         fileManager = compiler.getStandardFileManager(null, null, null);
         fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.emptyList());
         fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(generatedClassesPath));
         fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
         fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(classesDirFile));
+        // kept across compilations, so that unchanged classpath jars are not indexed again each time
+        cachingFileManager = new CachingJavaFileManager(fileManager, compiler.getStandardFileManager(null, null, null), classpath, classOutputStore);
+        cachingFileManager.setSourceOutputListener(generatedSourcesTracker::sourceWritten);
+    }
+
+    /**
+     * Returns the options javac is run with, given the bootstrap classpath
+     * @param bootstrap
+     * @return
+     */
+    public static List<String> getOptions(File bootstrap) {
+        return Arrays.asList("-implicit:none", "-bootclasspath", bootstrap.toString());
     }
 
     public boolean compile(List<FileInfo> modifiedJavaFiles) {
+        try {
+            cachingFileManager.invalidateChanged();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         // preCompile java files with javac into classesDir
         Iterable<? extends JavaFileObject> modifiedFileObjects = fileManager.getJavaFileObjectsFromStrings(modifiedJavaFiles.stream().map(FileInfo::sourcePath).collect(Collectors.toList()));
         //TODO pass-non null for "classes" to properly kick apt?
         //TODO consider a different classpath for this tasks, so as to not interfere with everything else?
 
-        CompilationTask task = compiler.getTask(null, fileManager, null, javacOptions, null, modifiedFileObjects);
+        CompilationTask task = compiler.getTask(null, cachingFileManager, null, javacOptions, null, modifiedFileObjects);
+        compiledTypes.clear();
+        generatedSourcesTracker.start(modifiedJavaFiles.stream().map(FileInfo::sourcePath).collect(Collectors.toList()));
+        ((JavacTask) task).addTaskListener(generatedSourcesTracker);
+        final Elements elements = ((JavacTask) task).getElements();
+        ((JavacTask) task).addTaskListener(new TaskListener() {
+            @Override
+            public void started(TaskEvent e) {
+            }
+
+            @Override
+            public void finished(TaskEvent e) {
+                if (e.getKind() == TaskEvent.Kind.GENERATE && e.getSourceFile() != null && e.getTypeElement() != null) {
+                    String sourcePath = Paths.get(e.getSourceFile().toUri()).toAbsolutePath().normalize().toString();
+                    compiledTypes.computeIfAbsent(sourcePath, k -> new HashSet<>()).add(elements.getBinaryName(e.getTypeElement()).toString());
+                }
+            }
+        });
 
         return task.call();
     }
+
+    /**
+     * Returns the binary names of the types written by the last compilation, mapped by (absolute) source path
+     */
+    public Map<String, Set<String>> getCompiledTypes() {
+        return compiledTypes;
+    }
+
+    /**
+     * Returns the originating sources of each source written by annotation processors during the last compilation,
+     * mapped by (absolute) generated source path
+     */
+    public Map<String, Set<String>> getGeneratedSources() {
+        return generatedSourcesTracker.getOriginatingSources(compiledTypes, this::readClassFile);
+    }
+
+    /**
+     * Read the class file of the given binary name, from memory if it is kept there
+     * @param binaryName
+     * @return
+     * @throws IOException
+     */
+    public ClassFileReader readClassFile(String binaryName) throws IOException {
+        final byte[] bytes = classOutputStore != null ? classOutputStore.get(binaryName) : null;
+        return bytes != null ? ClassFileReader.read(bytes) : ClassFileReader.read(getClassFile(binaryName).toPath());
+    }
+
+    /**
+     * Delete the class file of the given binary name, from memory too
+     * @param binaryName
+     * @throws IOException
+     */
+    public void deleteClassFile(String binaryName) throws IOException {
+        if (classOutputStore != null) {
+            classOutputStore.remove(binaryName);
+        }
+        Files.deleteIfExists(getClassFile(binaryName).toPath());
+    }
+
+    /**
+     * Wait for the class files kept in memory to be written to the classes directory
+     */
+    public void flush() {
+        if (classOutputStore != null) {
+            classOutputStore.flush();
+        }
+    }
+
+    /**
+     * Write the class files kept in memory, and release the jars opened while compiling. The
+     * <code>ClassOutputStore</code>, if any, is left open, since it may be shared
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        flush();
+        cachingFileManager.close();
+    }
+
+    /**
+     * Returns the .class <code>File</code> of the given binary name inside the classes directory
+     */
+    public File getClassFile(String binaryName) {
+        return new File(classesDirFile, binaryName.replace('.', '/') + ".class");
+    }
 }
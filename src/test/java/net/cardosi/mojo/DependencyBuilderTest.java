@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DependencyBuilderTest {
+
+    /**
+     * root -> a -> c, root -> b -> c: c is omitted, as duplicate, under b in the resolved tree
+     */
+    @Test
+    public void getDependencyGraphDiamond() {
+        final DefaultDependencyNode root = newNode(null, "root");
+        final DefaultDependencyNode a = newNode(root, "a");
+        final DefaultDependencyNode b = newNode(root, "b");
+        final DefaultDependencyNode c = newNode(a, "c");
+        root.setChildren(Arrays.asList(a, b));
+        a.setChildren(Collections.singletonList(c));
+        final org.eclipse.aether.graph.DefaultDependencyNode verboseRoot = newVerboseNode("root");
+        final org.eclipse.aether.graph.DefaultDependencyNode verboseA = newVerboseNode("a");
+        final org.eclipse.aether.graph.DefaultDependencyNode verboseB = newVerboseNode("b");
+        verboseRoot.setChildren(Arrays.asList(verboseA, verboseB));
+        verboseA.setChildren(Collections.singletonList(newVerboseNode("c")));
+        // the loser, kept by the verbose collection
+        verboseB.setChildren(Collections.singletonList(newVerboseNode("c")));
+
+        final Map<File, Set<File>> graph = DependencyBuilder.getDependencyGraph(root, verboseRoot);
+        assertEquals(new HashSet<>(Arrays.asList(file(a), file(b))), graph.get(file(root)));
+        assertEquals(Collections.singleton(file(c)), graph.get(file(a)));
+        assertEquals(Collections.singleton(file(c)), graph.get(file(b)));
+        assertEquals(Collections.emptySet(), graph.get(file(c)));
+
+        // without the verbose collection, only the resolved tree is available
+        assertEquals(Collections.emptySet(), DependencyBuilder.getDependencyGraph(root, null).get(file(b)));
+    }
+
+    private static DefaultDependencyNode newNode(DependencyNode parent, String artifactId) {
+        final DefaultArtifact artifact = new DefaultArtifact("g", artifactId, "1.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+        artifact.setFile(new File(artifactId + "-1.0.jar"));
+        return new DefaultDependencyNode(parent, artifact, null, null, null);
+    }
+
+    private static org.eclipse.aether.graph.DefaultDependencyNode newVerboseNode(String artifactId) {
+        return new org.eclipse.aether.graph.DefaultDependencyNode(new Dependency(new org.eclipse.aether.artifact.DefaultArtifact("g:" + artifactId + ":1.0"), "compile"));
+    }
+
+    private static File file(DependencyNode node) {
+        return node.getArtifact().getFile();
+    }
+}
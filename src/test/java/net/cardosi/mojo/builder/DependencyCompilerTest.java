@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DependencyCompilerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeJar() throws Exception {
+        final File dependency = temporaryFolder.newFile("dependency.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(dependency.toPath()))) {
+            for (String name : Arrays.asList("res/b.txt", "p/Foo.java", "p/Foo.class", "p/Foo$Inner.class", "p/Stripped.java", "p/Stripped.class",
+                                             "p/Generated.class", "p/Generated$Inner.class", "META-INF/MANIFEST.MF", "META-INF/SIGNER.SF",
+                                             "META-INF/SIGNER.RSA", "META-INF/services/p.Service", "res/a.txt")) {
+                output.putNextEntry(new ZipEntry(name));
+                output.write(("original " + name).getBytes(StandardCharsets.UTF_8));
+                output.closeEntry();
+            }
+        }
+        final Path classesDir = temporaryFolder.newFolder("classes").toPath();
+        Files.createDirectories(classesDir.resolve("p"));
+        Files.write(classesDir.resolve("p/Foo.class"), "compiled".getBytes(StandardCharsets.UTF_8));
+        Files.write(classesDir.resolve("p/Foo$Inner.class"), "compiled inner".getBytes(StandardCharsets.UTF_8));
+        final File jarOut = new File(temporaryFolder.getRoot(), "dependency.bytecode.jar");
+        DependencyCompiler.writeJar(classesDir, dependency, jarOut);
+        final List<String> names = new ArrayList<>();
+        try (JarFile written = new JarFile(jarOut)) {
+            for (JarEntry entry : (Iterable<JarEntry>) written.stream()::iterator) {
+                names.add(entry.getName());
+                assertEquals(entry.getName(), 315532800000L, entry.getTime());
+            }
+            assertEquals("compiled", read(written, "p/Foo.class"));
+            assertEquals("original p/Generated.class", read(written, "p/Generated.class"));
+        }
+        // compiled classes first, then the copied entries, each sorted; the stripped class, sources and signatures are left out
+        assertEquals(Arrays.asList("p/Foo$Inner.class", "p/Foo.class",
+                                   "META-INF/services/p.Service", "p/Generated$Inner.class", "p/Generated.class", "res/a.txt", "res/b.txt"), names);
+        // same content, same jar
+        final File otherJarOut = new File(temporaryFolder.getRoot(), "other.bytecode.jar");
+        Files.setLastModifiedTime(classesDir.resolve("p/Foo.class"), FileTime.fromMillis(1000));
+        DependencyCompiler.writeJar(classesDir, dependency, otherJarOut);
+        assertArrayEquals(Files.readAllBytes(jarOut.toPath()), Files.readAllBytes(otherJarOut.toPath()));
+    }
+
+    private static String read(JarFile jarFile, String name) throws IOException {
+        try (InputStream input = jarFile.getInputStream(jarFile.getEntry(name))) {
+            final StringBuilder toReturn = new StringBuilder();
+            int read;
+            while ((read = input.read()) != -1) {
+                toReturn.append((char) read);
+            }
+            return toReturn.toString();
+        }
+    }
+}
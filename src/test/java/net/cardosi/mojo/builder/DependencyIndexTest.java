@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyIndexTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DependencyIndex dependencyIndex;
+
+    @Before
+    public void setup() {
+        dependencyIndex = new DependencyIndex();
+        Map<String, Set<String>> compiledTypes = new HashMap<>();
+        for (Class<?> compiled : Arrays.asList(Leaf.class, Middle.class, Root.class, SubMiddle.class, SubMiddleUser.class, Unrelated.class, Constants.class)) {
+            compiledTypes.put(sourcePath(compiled), Collections.singleton(compiled.getName()));
+        }
+        assertEquals(compiledTypes.keySet(), dependencyIndex.update(compiledTypes, DependencyIndexTest::getClassFile));
+    }
+
+    @Test
+    public void update() {
+        Map<String, Set<String>> compiledTypes = Collections.singletonMap(sourcePath(Leaf.class), Collections.singleton(Leaf.class.getName()));
+        assertTrue(dependencyIndex.update(compiledTypes, DependencyIndexTest::getClassFile).isEmpty());
+        compiledTypes = Collections.singletonMap(sourcePath(Leaf.class), new HashSet<>(Arrays.asList(Leaf.class.getName(), Unrelated.class.getName())));
+        assertEquals(compiledTypes.keySet(), dependencyIndex.update(compiledTypes, DependencyIndexTest::getClassFile));
+    }
+
+    @Test
+    public void getDependentSources() {
+        assertEquals(Collections.singleton(sourcePath(Middle.class)), dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Leaf.class))));
+        assertEquals(new HashSet<>(Arrays.asList(sourcePath(Root.class), sourcePath(SubMiddle.class), sourcePath(SubMiddleUser.class))), dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Middle.class))));
+        assertTrue(dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Root.class))).isEmpty());
+        assertTrue(dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Unrelated.class))).isEmpty());
+    }
+
+    @Test
+    public void isDeclaringConstants() {
+        assertTrue(dependencyIndex.isDeclaringConstants(sourcePath(Constants.class)));
+        assertFalse(dependencyIndex.isDeclaringConstants(sourcePath(Leaf.class)));
+    }
+
+    @Test
+    public void remove() {
+        dependencyIndex.remove(sourcePath(Root.class));
+        assertFalse(dependencyIndex.contains(sourcePath(Root.class)));
+        assertFalse(dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Middle.class))).contains(sourcePath(Root.class)));
+    }
+
+    @Test
+    public void updateGeneratedSources() {
+        final Map<String, Set<String>> originatingSources = new HashMap<>();
+        originatingSources.put("/gen/LeafFactory.java", Collections.singleton(sourcePath(Leaf.class)));
+        originatingSources.put("/gen/Registry.java", new HashSet<>(Arrays.asList(sourcePath(Leaf.class), sourcePath(Root.class))));
+        assertTrue(dependencyIndex.updateGeneratedSources(Arrays.asList(sourcePath(Leaf.class), sourcePath(Root.class)), originatingSources).isEmpty());
+        assertEquals(Collections.singleton(sourcePath(Leaf.class)), dependencyIndex.getOriginatingSources(Collections.singleton("/gen/LeafFactory.java")));
+        assertTrue(dependencyIndex.isGeneratingSources(sourcePath(Root.class)));
+        assertFalse(dependencyIndex.isGeneratingSources(sourcePath(Unrelated.class)));
+        // Registry is still generated out of Root
+        assertEquals(Collections.singleton("/gen/LeafFactory.java"), dependencyIndex.updateGeneratedSources(Collections.singleton(sourcePath(Leaf.class)), Collections.emptyMap()));
+        assertEquals(Collections.singleton("/gen/Registry.java"), dependencyIndex.updateGeneratedSources(Collections.singleton(sourcePath(Root.class)), Collections.emptyMap()));
+        assertFalse(dependencyIndex.isGeneratingSources(sourcePath(Root.class)));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        File indexFile = new File(temporaryFolder.getRoot(), "dependency.index");
+        dependencyIndex.save(indexFile);
+        // replaced, without leaving temporary files around
+        dependencyIndex.save(indexFile);
+        assertEquals(1, temporaryFolder.getRoot().list((dir, name) -> name.startsWith(indexFile.getName())).length);
+        DependencyIndex loaded = DependencyIndex.load(indexFile);
+        assertEquals(dependencyIndex.getDependentSources(Collections.singleton(sourcePath(Leaf.class))), loaded.getDependentSources(Collections.singleton(sourcePath(Leaf.class))));
+        assertTrue(DependencyIndex.load(new File(temporaryFolder.getRoot(), "missing.index")).isEmpty());
+    }
+
+    private static String sourcePath(Class<?> compiled) {
+        return "/src/" + compiled.getSimpleName() + ".java";
+    }
+
+    private static File getClassFile(String binaryName) {
+        try {
+            return new File(DependencyIndexTest.class.getResource("/" + binaryName.replace('.', '/') + ".class").toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class Leaf {
+
+    }
+
+    static class Middle {
+
+        Leaf leaf;
+    }
+
+    static class Root {
+
+        Middle getMiddle() {
+            return null;
+        }
+    }
+
+    static class SubMiddle extends Middle {
+
+    }
+
+    static class SubMiddleUser {
+
+        void use(SubMiddle subMiddle) {
+        }
+    }
+
+    static class Unrelated {
+
+    }
+
+    static class Constants {
+
+        public static final int VALUE = 42;
+    }
+}
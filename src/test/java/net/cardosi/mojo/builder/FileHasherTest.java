@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FileHasherTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void hash() throws Exception {
+        byte[] content = new byte[(int) FileHasher.MAPPED_THRESHOLD * 2 + 1];
+        Arrays.fill(content, (byte) 'a');
+        Path mapped = Files.write(temporaryFolder.newFile("mapped.jar").toPath(), content);
+        Path copy = Files.write(temporaryFolder.newFile("copy.jar").toPath(), content);
+        assertEquals(FileHasher.hash(mapped), FileHasher.hash(copy));
+        content[content.length - 1] = 'b';
+        Files.write(copy, content);
+        assertNotEquals(FileHasher.hash(mapped), FileHasher.hash(copy));
+        Path small = Files.write(temporaryFolder.newFile("small.jar").toPath(), "small".getBytes());
+        assertEquals(FileHasher.hash(small), FileHasher.hash(small));
+        assertNotEquals(FileHasher.hash(small), FileHasher.hash(mapped));
+    }
+
+    @Test
+    public void hashAll() throws Exception {
+        File first = Files.write(temporaryFolder.newFile("first.jar").toPath(), "first".getBytes()).toFile();
+        File second = Files.write(temporaryFolder.newFile("second.jar").toPath(), "second".getBytes()).toFile();
+        JarIndex jarIndex = new JarIndex();
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            FileHasher.hashAll(jarIndex, Arrays.asList(first, second, temporaryFolder.getRoot()), executorService);
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(FileHasher.hash(first.toPath()), jarIndex.getHash(first));
+        assertEquals(FileHasher.hash(second.toPath()), jarIndex.getHash(second));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void isChanged() throws Exception {
+        FileSnapshot fileSnapshot = new FileSnapshot();
+        Path source = Files.write(temporaryFolder.newFile("Foo.java").toPath(), "class Foo {}".getBytes());
+        assertTrue(fileSnapshot.isChanged(source));
+        // still changed until committed
+        assertTrue(fileSnapshot.isChanged(source));
+        fileSnapshot.commit(Collections.singleton(source.toAbsolutePath().normalize().toString()));
+        assertFalse(fileSnapshot.isChanged(source));
+        // touched, same content
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertFalse(fileSnapshot.isChanged(source));
+        Files.write(source, "class Foo { }".getBytes());
+        assertTrue(fileSnapshot.isChanged(source));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        FileSnapshot fileSnapshot = new FileSnapshot();
+        Path source = Files.write(temporaryFolder.newFile("Foo.java").toPath(), "class Foo {}".getBytes());
+        assertTrue(fileSnapshot.isChanged(source));
+        fileSnapshot.commit(Collections.singleton(source.toAbsolutePath().normalize().toString()));
+        File snapshotFile = new File(temporaryFolder.getRoot(), "file.snapshot");
+        fileSnapshot.save(snapshotFile);
+        // replaced, without leaving temporary files around
+        fileSnapshot.save(snapshotFile);
+        assertEquals(1, temporaryFolder.getRoot().list((dir, name) -> name.startsWith(snapshotFile.getName())).length);
+        FileSnapshot loaded = FileSnapshot.load(snapshotFile);
+        assertFalse(loaded.isChanged(source));
+        Files.write(source, "class Foo { int a; }".getBytes());
+        assertTrue(loaded.isChanged(source));
+        assertTrue(FileSnapshot.load(new File(temporaryFolder.getRoot(), "missing.snapshot")).isChanged(source));
+    }
+}
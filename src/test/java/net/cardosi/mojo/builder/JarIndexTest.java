@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JarIndexTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getHash() throws Exception {
+        JarIndex jarIndex = new JarIndex();
+        File jar = temporaryFolder.newFile("dependency.jar");
+        Files.write(jar.toPath(), "content".getBytes());
+        String hash = jarIndex.getHash(jar);
+        assertEquals(hash, jarIndex.getHash(jar));
+        Files.write(jar.toPath(), "changed content".getBytes());
+        assertNotEquals(hash, jarIndex.getHash(jar));
+    }
+
+    @Test
+    public void isWithoutSources() throws Exception {
+        JarIndex jarIndex = new JarIndex();
+        File jar = temporaryFolder.newFile("dependency.jar");
+        Files.write(jar.toPath(), "content".getBytes());
+        assertFalse(jarIndex.isWithoutSources(jar));
+        jarIndex.setWithoutSources(jar);
+        assertTrue(jarIndex.isWithoutSources(jar));
+        Files.write(jar.toPath(), "changed content".getBytes());
+        assertFalse(jarIndex.isWithoutSources(jar));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        JarIndex jarIndex = new JarIndex();
+        File jar = temporaryFolder.newFile("dependency.jar");
+        jarIndex.setWithoutSources(jar);
+        File indexFile = new File(temporaryFolder.getRoot(), "jar.index");
+        jarIndex.save(indexFile);
+        JarIndex loaded = JarIndex.load(indexFile);
+        assertEquals(jarIndex.getHash(jar), loaded.getHash(jar));
+        assertTrue(loaded.isWithoutSources(jar));
+        assertFalse(JarIndex.load(new File(temporaryFolder.getRoot(), "missing.index")).isWithoutSources(jar));
+    }
+}
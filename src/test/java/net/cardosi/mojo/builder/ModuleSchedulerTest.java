@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.j2cl.frontend.FrontendUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleSchedulerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path root;
+    private MavenProject api;
+    private MavenProject impl;
+    private MavenProject other;
+    private MavenProject client;
+    private ModuleScheduler moduleScheduler;
+
+    @Before
+    public void setup() {
+        root = temporaryFolder.getRoot().toPath();
+        api = newProject("api", "api/src/main/java", "api/target/generated-sources/annotations");
+        impl = newProject("impl", "impl/src");
+        // its root has the one of impl as string prefix
+        other = newProject("other", "impl/src-other");
+        client = newProject("client", "client/src");
+        // as reactor projects whose dependencies have not been resolved, i.e. without artifacts
+        addDependency(impl, api);
+        addDependency(client, impl);
+        // not a reactor project
+        addDependency(client, newProject("external"));
+        moduleScheduler = new ModuleScheduler(Arrays.asList(api, impl, other, client));
+    }
+
+    @Test
+    public void groupByModule() {
+        final FrontendUtils.FileInfo apiSource = source("api/src/main/java/a/Api.java");
+        final FrontendUtils.FileInfo apiGenerated = source("api/target/generated-sources/annotations/a/ApiFactory.java");
+        final FrontendUtils.FileInfo implSource = source("impl/src/b/Impl.java");
+        final FrontendUtils.FileInfo otherSource = source("impl/src-other/c/Other.java");
+        final FrontendUtils.FileInfo outsideSource = source("generated/d/Outside.java");
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> groups = moduleScheduler.groupByModule(Arrays.asList(apiSource, implSource, apiGenerated, otherSource, outsideSource));
+        // all the roots of a project in the same module
+        assertEquals(Arrays.asList(apiSource, apiGenerated), groups.get(api));
+        assertEquals(Collections.singletonList(implSource), groups.get(impl));
+        assertEquals(Collections.singletonList(otherSource), groups.get(other));
+        assertEquals(Collections.singletonList(outsideSource), groups.get(null));
+        assertEquals(4, groups.size());
+        assertNull(moduleScheduler.getModule(source("impl/srcX/Foo.java")));
+    }
+
+    @Test
+    public void getUpstreamModules() {
+        final Set<MavenProject> modules = new HashSet<>(Arrays.asList(api, impl, other, null));
+        assertEquals(Collections.singleton(api), moduleScheduler.getUpstreamModules(impl, modules));
+        assertEquals(Collections.emptySet(), moduleScheduler.getUpstreamModules(api, modules));
+        assertEquals(new HashSet<>(Arrays.asList(api, impl, other)), moduleScheduler.getUpstreamModules(null, modules));
+    }
+
+    @Test
+    public void getUpstreamModulesTransitively() {
+        assertTrue(client.getArtifacts().isEmpty());
+        // impl, in between, has nothing to compile
+        final Set<MavenProject> modules = new HashSet<>(Arrays.asList(api, client));
+        assertEquals(Collections.singleton(api), moduleScheduler.getUpstreamModules(client, modules));
+        assertEquals(Collections.emptySet(), moduleScheduler.getUpstreamModules(api, modules));
+    }
+
+    @Test
+    public void getPartiallyCompiledModules() throws IOException {
+        final FrontendUtils.FileInfo apiSource = writeSource("api/src/main/java/a/Api.java");
+        final FrontendUtils.FileInfo apiGenerated = writeSource("api/target/generated-sources/annotations/a/ApiFactory.java");
+        final FrontendUtils.FileInfo implSource = writeSource("impl/src/b/Impl.java");
+        writeSource("impl/src/b/impl.native.js");
+        assertEquals(new HashSet<>(Arrays.asList(apiSource.sourcePath(), apiGenerated.sourcePath())), toSourcePaths(moduleScheduler.getSources(api)));
+        assertEquals(Collections.singleton(implSource.sourcePath()), toSourcePaths(moduleScheduler.getSources(impl)));
+        // api generated sources out of Api, compiled without ApiFactory
+        assertEquals(Collections.singleton(api), moduleScheduler.getPartiallyCompiledModules(Collections.singletonList(apiSource), Arrays.asList(apiSource, implSource)));
+        assertEquals(Collections.emptySet(), moduleScheduler.getPartiallyCompiledModules(Collections.singletonList(apiSource), Arrays.asList(apiSource, apiGenerated)));
+        // outside modules
+        assertEquals(Collections.emptySet(), moduleScheduler.getPartiallyCompiledModules(Collections.singletonList(source("generated/d/Outside.java")), Collections.emptyList()));
+    }
+
+    @Test
+    public void compile() {
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> moduleSources = moduleScheduler.groupByModule(Arrays.asList(
+                source("generated/d/Outside.java"), source("impl/src/b/Impl.java"), source("impl/src-other/c/Other.java"),
+                source("api/src/main/java/a/Api.java"), source("api/target/generated-sources/annotations/a/ApiFactory.java")));
+        final List<MavenProject> compiled = Collections.synchronizedList(new ArrayList<>());
+        assertTrue(moduleScheduler.compile(moduleSources, 4, (module, sources) -> {
+            assertEquals(moduleSources.get(module), sources);
+            if (module == null) {
+                assertTrue(compiled.containsAll(Arrays.asList(api, impl, other)));
+            } else if (module == impl) {
+                assertTrue(compiled.contains(api));
+            }
+            compiled.add(module);
+            return true;
+        }));
+        assertEquals(4, compiled.size());
+    }
+
+    @Test
+    public void compileFailure() {
+        final Map<MavenProject, List<FrontendUtils.FileInfo>> moduleSources = moduleScheduler.groupByModule(Arrays.asList(
+                source("impl/src/b/Impl.java"), source("impl/src-other/c/Other.java"), source("api/src/main/java/a/Api.java")));
+        final List<MavenProject> compiled = Collections.synchronizedList(new ArrayList<>());
+        assertFalse(moduleScheduler.compile(moduleSources, 4, (module, sources) -> {
+            compiled.add(module);
+            return module != api;
+        }));
+        // the downstream module is not compiled
+        assertEquals(new HashSet<>(Arrays.asList(api, other)), new HashSet<>(compiled));
+    }
+
+    private MavenProject newProject(String artifactId, String... sourceRoots) {
+        final MavenProject toReturn = new MavenProject();
+        toReturn.setGroupId("g");
+        toReturn.setArtifactId(artifactId);
+        toReturn.setVersion("1.0");
+        for (String sourceRoot : sourceRoots) {
+            toReturn.addCompileSourceRoot(root.resolve(sourceRoot).toString());
+        }
+        return toReturn;
+    }
+
+    private static void addDependency(MavenProject project, MavenProject upstreamProject) {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId(upstreamProject.getGroupId());
+        dependency.setArtifactId(upstreamProject.getArtifactId());
+        dependency.setVersion(upstreamProject.getVersion());
+        project.getDependencies().add(dependency);
+    }
+
+    private FrontendUtils.FileInfo writeSource(String path) throws IOException {
+        final Path sourcePath = root.resolve(path);
+        Files.createDirectories(sourcePath.getParent());
+        Files.write(sourcePath, new byte[0]);
+        return source(path);
+    }
+
+    private static Set<String> toSourcePaths(List<FrontendUtils.FileInfo> sources) {
+        return sources.stream().map(FrontendUtils.FileInfo::sourcePath).collect(Collectors.toSet());
+    }
+
+    private FrontendUtils.FileInfo source(String path) {
+        final String sourcePath = root.resolve(path).toString();
+        return FrontendUtils.FileInfo.create(sourcePath, sourcePath);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class PreprocessCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getKey() throws Exception {
+        PreprocessCache preprocessCache = new PreprocessCache(temporaryFolder.getRoot(), "tools", 1024);
+        assertEquals(preprocessCache.getKey("class A {}".getBytes()), preprocessCache.getKey("class A {}".getBytes()));
+        assertNotEquals(preprocessCache.getKey("class A {}".getBytes()), preprocessCache.getKey("class B {}".getBytes()));
+        PreprocessCache otherTools = new PreprocessCache(temporaryFolder.getRoot(), "other tools", 1024);
+        assertNotEquals(preprocessCache.getKey("class A {}".getBytes()), otherTools.getKey("class A {}".getBytes()));
+    }
+
+    @Test
+    public void getAndPut() throws Exception {
+        File directory = new File(temporaryFolder.getRoot(), "cache");
+        PreprocessCache preprocessCache = new PreprocessCache(directory, "tools", 10);
+        String first = preprocessCache.getKey("first".getBytes());
+        String second = preprocessCache.getKey("second".getBytes());
+        assertNull(preprocessCache.get(first));
+        preprocessCache.put(first, "processed first".getBytes());
+        // evicts first from memory
+        preprocessCache.put(second, "processed second".getBytes());
+        assertArrayEquals("processed first".getBytes(), preprocessCache.get(first));
+        assertArrayEquals("processed second".getBytes(), preprocessCache.get(second));
+        // read back from disk
+        PreprocessCache reloaded = new PreprocessCache(directory, "tools", 10);
+        assertArrayEquals("processed first".getBytes(), reloaded.get(first));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.builder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.j2cl.frontend.FrontendUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SourceDirWatcherTest {
+
+    // some WatchService implementations are polling-based, with a 10 seconds interval
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void modifiedAndCreated() throws Exception {
+        File sourceDir = temporaryFolder.newFolder("src");
+        Path existing = Files.write(new File(sourceDir, "Existing.java").toPath(), "class Existing {}".getBytes());
+        try (SourceDirWatcher sourceDirWatcher = new SourceDirWatcher(Collections.singletonList(sourceDir.getAbsolutePath()))) {
+            Files.write(existing, "class Existing { int a; }".getBytes());
+            Files.write(new File(sourceDir, "notes.txt").toPath(), "ignored".getBytes());
+            File packageDir = new File(sourceDir, "foo/bar");
+            assertTrue(packageDir.mkdirs());
+            Path created = Files.write(new File(packageDir, "Created.java").toPath(), "package foo.bar; class Created {}".getBytes());
+            Set<Path> notified = waitFor(sourceDirWatcher, existing, created);
+            assertTrue(notified.contains(existing));
+            assertTrue(notified.contains(created));
+            assertFalse(notified.contains(new File(sourceDir, "notes.txt").toPath()));
+        }
+    }
+
+    @Test
+    public void deleted() throws Exception {
+        File sourceDir = temporaryFolder.newFolder("src");
+        Path existing = Files.write(new File(sourceDir, "Existing.java").toPath(), "class Existing {}".getBytes());
+        try (SourceDirWatcher sourceDirWatcher = new SourceDirWatcher(Collections.singletonList(sourceDir.getAbsolutePath()))) {
+            Files.delete(existing);
+            Set<Path> notified = new HashSet<>();
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!notified.contains(existing) && System.currentTimeMillis() < deadline) {
+                SourceDirWatcher.Changes changes = sourceDirWatcher.poll(500, TimeUnit.MILLISECONDS);
+                assertFalse(changes.getModifiedSources().contains(existing));
+                notified.addAll(changes.getDeletedSources());
+            }
+            assertTrue(notified.contains(existing));
+        }
+    }
+
+    @Test
+    public void jsSources() throws Exception {
+        File sourceDir = temporaryFolder.newFolder("src");
+        Path java = Files.write(new File(sourceDir, "Existing.java").toPath(), "class Existing {}".getBytes());
+        Path nativeJs = Files.write(new File(sourceDir, "Existing.native.js").toPath(), "// native".getBytes());
+        try (SourceDirWatcher sourceDirWatcher = new SourceDirWatcher(Collections.singletonList(sourceDir.getAbsolutePath()))) {
+            Files.write(nativeJs, "// native, modified".getBytes());
+            Path plainJs = Files.write(new File(sourceDir, "plain.js").toPath(), "// plain".getBytes());
+            Set<Path> notified = waitFor(sourceDirWatcher, nativeJs, plainJs);
+            assertTrue(notified.contains(nativeJs));
+            assertTrue(notified.contains(plainJs));
+            // the native one is compiled as its java source, while the plain one is just copied
+            List<FrontendUtils.FileInfo> changedSources = SingleCompiler.toChangedSources(notified.stream()
+                    .map(path -> FrontendUtils.FileInfo.create(path.toString(), path.toString()))
+                    .collect(Collectors.toList()));
+            assertEquals(new HashSet<>(Arrays.asList(java.toString(), plainJs.toString())),
+                         changedSources.stream().map(FrontendUtils.FileInfo::sourcePath).collect(Collectors.toSet()));
+            Files.delete(plainJs);
+            Set<Path> deleted = new HashSet<>();
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!deleted.contains(plainJs) && System.currentTimeMillis() < deadline) {
+                deleted.addAll(sourceDirWatcher.poll(500, TimeUnit.MILLISECONDS).getDeletedSources());
+            }
+            assertTrue(deleted.contains(plainJs));
+        }
+    }
+
+    private Set<Path> waitFor(SourceDirWatcher sourceDirWatcher, Path... expected) throws InterruptedException {
+        Set<Path> toReturn = new HashSet<>();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            toReturn.addAll(sourceDirWatcher.poll(500, TimeUnit.MILLISECONDS).getModifiedSources());
+            boolean allFound = true;
+            for (Path path : expected) {
+                allFound &= toReturn.contains(path);
+            }
+            if (allFound) {
+                break;
+            }
+        }
+        return toReturn;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryJsZipCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fetchAndStore() throws Exception {
+        JsZipCache jsZipCache = new DirectoryJsZipCache(new File(temporaryFolder.getRoot(), "shared"));
+        File localDir = temporaryFolder.newFolder("local");
+        Path target = new File(localDir, "key-dependency.jar.js.zip").toPath();
+        assertFalse(jsZipCache.fetch("key-dependency.jar.js.zip", target));
+        assertFalse(Files.exists(target));
+        Path source = Files.write(temporaryFolder.newFile("built.js.zip").toPath(), "jszip".getBytes());
+        jsZipCache.store("key-dependency.jar.js.zip", source);
+        assertTrue(jsZipCache.fetch("key-dependency.jar.js.zip", target));
+        assertArrayEquals("jszip".getBytes(), Files.readAllBytes(target));
+        assertTrue(localDir.list().length == 1);
+    }
+}
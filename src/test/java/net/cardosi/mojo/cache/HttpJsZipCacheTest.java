@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cardosi.mojo.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpJsZipCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // stand-in for the remote cache, storing entries in memory
+    private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+    private HttpServer httpServer;
+
+    @Before
+    public void setup() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/cache/", this::handle);
+        httpServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        httpServer.stop(0);
+    }
+
+    @Test
+    public void fetchAndStore() throws Exception {
+        JsZipCache jsZipCache = new HttpJsZipCache("http://127.0.0.1:" + httpServer.getAddress().getPort() + "/cache");
+        Path target = new File(temporaryFolder.getRoot(), "key-dependency.jar.js.zip").toPath();
+        assertFalse(jsZipCache.fetch("key-dependency.jar.js.zip", target));
+        assertFalse(Files.exists(target));
+        Path source = Files.write(temporaryFolder.newFile("built.js.zip").toPath(), "jszip".getBytes());
+        jsZipCache.store("key-dependency.jar.js.zip", source);
+        assertTrue(entries.containsKey("/cache/key-dependency.jar.js.zip"));
+        assertTrue(jsZipCache.fetch("key-dependency.jar.js.zip", target));
+        assertArrayEquals("jszip".getBytes(), Files.readAllBytes(target));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                requestBody.write(buffer, 0, read);
+            }
+        }
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            entries.put(path, requestBody.toByteArray());
+            exchange.sendResponseHeaders(201, -1);
+        } else if (entries.containsKey(path)) {
+            byte[] content = entries.get(path);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(content);
+            }
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsZipCacheCleanerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void clean() throws Exception {
+        File oldest = createEntry("oldest.js.zip", 1000);
+        File inUse = createEntry("in-use.js.zip", 2000);
+        File older = createEntry("older.js.zip", 3000);
+        File newest = createEntry("newest.js.zip", 4000);
+        File index = temporaryFolder.newFile("j2cl-jar.index");
+        JsZipCacheCleaner.touch(older);
+        JsZipCacheCleaner cleaner = new JsZipCacheCleaner(temporaryFolder.getRoot(), 20);
+        List<File> evicted = cleaner.clean(Collections.singleton(inUse.getAbsoluteFile()));
+        // newest is the least recently used after older has been touched
+        assertEquals(2, evicted.size());
+        assertFalse(oldest.exists());
+        assertFalse(newest.exists());
+        assertTrue(inUse.exists());
+        assertTrue(older.exists());
+        assertTrue(index.exists());
+        assertTrue(cleaner.clean(Collections.emptySet()).isEmpty());
+    }
+
+    @Test
+    public void cleanStale() throws Exception {
+        long stale = System.currentTimeMillis() - JsZipCacheCleaner.STALE_AGE - 1000;
+        File staleTemp = createEntry("dependency.jar.js.zip123.tmp", stale);
+        File staleLock = createEntry("dependency.jar.js.zip" + JsZipCacheLock.LOCK_SUFFIX, stale);
+        File recentTemp = createEntry("other.jar.js.zip456.tmp", System.currentTimeMillis());
+        File oldEntry = createEntry("dependency.jar.js.zip", stale);
+        assertTrue(new JsZipCacheCleaner(temporaryFolder.getRoot(), 100).clean(Collections.emptySet()).isEmpty());
+        assertFalse(staleTemp.exists());
+        assertFalse(staleLock.exists());
+        assertTrue(recentTemp.exists());
+        // within the maximum size
+        assertTrue(oldEntry.exists());
+    }
+
+    private File createEntry(String name, long lastModified) throws Exception {
+        File toReturn = temporaryFolder.newFile(name);
+        Files.write(toReturn.toPath(), new byte[10]);
+        assertTrue(toReturn.setLastModified(lastModified));
+        return toReturn;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cardosi.mojo.cache;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsZipCacheLockTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void acquire() throws Exception {
+        File entry = new File(temporaryFolder.getRoot(), "key-dependency.jar.js.zip");
+        File lockFile = new File(entry.getAbsolutePath() + JsZipCacheLock.LOCK_SUFFIX);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting;
+            CountDownLatch started = new CountDownLatch(1);
+            try (JsZipCacheLock lock = JsZipCacheLock.acquire(entry)) {
+                assertTrue(lockFile.exists());
+                waiting = executorService.submit(() -> {
+                    started.countDown();
+                    try (JsZipCacheLock other = JsZipCacheLock.acquire(entry)) {
+                        return entry.exists();
+                    }
+                });
+                started.await();
+                try {
+                    waiting.get(200, TimeUnit.MILLISECONDS);
+                    fail("Lock acquired while held");
+                } catch (TimeoutException e) {
+                    // expected
+                }
+                assertTrue(entry.createNewFile());
+            }
+            assertTrue(waiting.get(5, TimeUnit.SECONDS));
+            // kept, so that a waiter never locks a deleted file
+            assertTrue(lockFile.exists());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingJavaFileManagerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void listKeepsJarsAndRefreshesDirectories() throws IOException {
+        final File jar = temporaryFolder.newFile("dependency.jar");
+        writeJar(jar, "a/A.class");
+        final File classesDir = temporaryFolder.newFolder("classes");
+        final List<File> classpath = Arrays.asList(classesDir, jar);
+        try (CachingJavaFileManager fileManager = newFileManager(classpath)) {
+            assertEquals(Collections.singletonList("a/A.class"), list(fileManager));
+            Files.createDirectories(classesDir.toPath().resolve("a"));
+            Files.write(classesDir.toPath().resolve("a/B.class"), new byte[0]);
+            assertFalse(fileManager.invalidateChanged());
+            assertEquals(Arrays.asList("a/B.class", "a/A.class"), list(fileManager));
+        }
+    }
+
+    @Test
+    public void listInClasspathOrder() throws IOException {
+        final File firstJar = temporaryFolder.newFile("first.jar");
+        writeJar(firstJar, "a/A.class");
+        final File classesDir = temporaryFolder.newFolder("classes");
+        Files.createDirectories(classesDir.toPath().resolve("a"));
+        Files.write(classesDir.toPath().resolve("a/A.class"), new byte[0]);
+        final File lastJar = temporaryFolder.newFile("last.jar");
+        writeJar(lastJar, "a/A.class");
+        try (CachingJavaFileManager fileManager = newFileManager(Arrays.asList(firstJar, classesDir, lastJar))) {
+            final List<String> origins = new ArrayList<>();
+            for (JavaFileObject listed : fileManager.list(StandardLocation.CLASS_PATH, "a", EnumSet.of(JavaFileObject.Kind.CLASS), false)) {
+                final String uri = listed.toUri().toString();
+                origins.add(uri.contains("first.jar") ? "first.jar" : uri.contains("last.jar") ? "last.jar" : "classes");
+            }
+            // javac keeps the first one
+            assertEquals(Arrays.asList("first.jar", "classes", "last.jar"), origins);
+        }
+    }
+
+    @Test
+    public void invalidateChanged() throws IOException {
+        final File jar = temporaryFolder.newFile("dependency.jar");
+        writeJar(jar, "a/A.class");
+        try (CachingJavaFileManager fileManager = newFileManager(Collections.singletonList(jar))) {
+            assertEquals(Collections.singletonList("a/A.class"), list(fileManager));
+            writeJar(jar, "a/A.class", "a/C.class");
+            assertTrue(fileManager.invalidateChanged());
+            final List<String> listed = list(fileManager);
+            Collections.sort(listed);
+            assertEquals(Arrays.asList("a/A.class", "a/C.class"), listed);
+            assertFalse(fileManager.invalidateChanged());
+        }
+    }
+
+    private static CachingJavaFileManager newFileManager(List<File> classpath) throws IOException {
+        final StandardJavaFileManager standardFileManager = ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null);
+        standardFileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+        return new CachingJavaFileManager(standardFileManager, ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null), classpath);
+    }
+
+    private static List<String> list(CachingJavaFileManager fileManager) throws IOException {
+        final List<String> toReturn = new ArrayList<>();
+        for (JavaFileObject listed : fileManager.list(StandardLocation.CLASS_PATH, "a", EnumSet.of(JavaFileObject.Kind.CLASS), false)) {
+            toReturn.add("a/" + fileManager.inferBinaryName(StandardLocation.CLASS_PATH, listed).substring(2) + ".class");
+        }
+        return toReturn;
+    }
+
+    private static void writeJar(File jar, String... entries) throws IOException {
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (String entry : entries) {
+                output.putNextEntry(new ZipEntry(entry));
+                output.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileReaderTest {
+
+    private static final String ORIGINAL = "package p; public class Foo extends java.util.ArrayList<String> { public static final int VALUE = 1; private int hidden; public String bar(java.util.Map<String, Integer> map) { return \"a\"; } }";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read() throws Exception {
+        ClassFileReader classFileReader = compile(ORIGINAL);
+        assertEquals("p.Foo", classFileReader.getClassName());
+        assertTrue(classFileReader.getReferencedTypes().contains("java.util.Map"));
+        assertTrue(classFileReader.getReferencedTypes().contains("java.lang.Integer"));
+        assertFalse(classFileReader.getReferencedTypes().contains("p.Foo"));
+        assertTrue(classFileReader.getSuperTypes().contains("java.util.ArrayList"));
+        assertTrue(classFileReader.isDeclaringConstants());
+    }
+
+    @Test
+    public void apiFingerprint() throws Exception {
+        String original = compile(ORIGINAL).getApiFingerprint();
+        assertEquals(original, compile(ORIGINAL.replace("return \"a\";", "hidden++; return \"b\" + hidden;")).getApiFingerprint());
+        assertEquals(original, compile(ORIGINAL.replace("private int hidden;", "private long hidden; private void other() {}")).getApiFingerprint());
+        assertNotEquals(original, compile(ORIGINAL.replace("VALUE = 1", "VALUE = 2")).getApiFingerprint());
+        assertNotEquals(original, compile(ORIGINAL.replace("public String bar", "protected String bar")).getApiFingerprint());
+        assertNotEquals(original, compile(ORIGINAL.replace("Integer>", "Long>")).getApiFingerprint());
+        assertNotEquals(original, compile(ORIGINAL.replace("public class Foo", "@Deprecated public class Foo")).getApiFingerprint());
+        assertNotEquals(original, compile(ORIGINAL.replace("bar(java.util.Map", "bar(@Deprecated java.util.Map")).getApiFingerprint());
+    }
+
+    @Test
+    public void apiFingerprintOfNestedClass() throws Exception {
+        String source = ORIGINAL.replace("private int hidden;", "public static class Inner { } private int hidden;");
+        String original = compile(source, "Foo$Inner").getApiFingerprint();
+        String outerOriginal = compile(source).getApiFingerprint();
+        // both are recorded as ACC_PUBLIC in the access flags of the nested class file
+        String protectedSource = source.replace("public static class Inner", "protected static class Inner");
+        assertNotEquals(original, compile(protectedSource, "Foo$Inner").getApiFingerprint());
+        assertNotEquals(outerOriginal, compile(protectedSource).getApiFingerprint());
+        // a nested class that is merely referenced does not matter
+        assertEquals(outerOriginal, compile(source.replace("return \"a\";", "java.util.Map.Entry<String, Integer> entry = null; return \"a\" + entry;")).getApiFingerprint());
+    }
+
+    private ClassFileReader compile(String source) throws Exception {
+        return compile(source, "Foo");
+    }
+
+    private ClassFileReader compile(String source, String className) throws Exception {
+        File sourceDir = temporaryFolder.newFolder();
+        File sourceFile = new File(sourceDir, "Foo.java");
+        Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", sourceDir.getAbsolutePath(), sourceFile.getAbsolutePath()));
+        return ClassFileReader.read(new File(sourceDir, "p/" + className + ".class").toPath());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ClassOutputStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void putAndFlush() throws IOException {
+        final File classesDir = temporaryFolder.newFolder("classes");
+        final ClassOutputStore classOutputStore = new ClassOutputStore(classesDir);
+        classOutputStore.put("a.A", new byte[]{1});
+        classOutputStore.put("a.A", new byte[]{2});
+        classOutputStore.put("a.b.B", new byte[]{3});
+        assertArrayEquals(new byte[]{2}, classOutputStore.get("a.A"));
+        classOutputStore.flush();
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(new File(classesDir, "a/A.class").toPath()));
+        assertArrayEquals(new byte[]{3}, Files.readAllBytes(new File(classesDir, "a/b/B.class").toPath()));
+        assertEquals(Collections.singleton("a.A"), classOutputStore.list("a", false));
+        assertEquals(new HashSet<>(Arrays.asList("a.A", "a.b.B")), classOutputStore.list("a", true));
+        classOutputStore.close();
+    }
+
+    @Test
+    public void remove() throws IOException {
+        final File classesDir = temporaryFolder.newFolder("classes");
+        final ClassOutputStore classOutputStore = new ClassOutputStore(classesDir);
+        classOutputStore.put("a.A", new byte[]{1});
+        classOutputStore.remove("a.A");
+        classOutputStore.flush();
+        assertNull(classOutputStore.get("a.A"));
+        assertFalse(new File(classesDir, "a/A.class").exists());
+        classOutputStore.close();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.j2cl.common.Problems;
+import com.google.j2cl.frontend.FrontendUtils.FileInfo;
+import com.google.j2cl.tools.gwtincompatible.JavaPreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares preprocessing all the sources of the <b>src/test/projects/build</b> project with the preprocessor against
+ * scanning them first, and parsing only the ones that may contain <code>@GwtIncompatible</code>.
+ * <p>
+ * Run it with <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=net.cardosi.mojo.tools.GwtIncompatiblePreprocessorBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GwtIncompatiblePreprocessorBenchmark {
+
+    private List<FileInfo> sources;
+    private List<byte[]> contents;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GwtIncompatiblePreprocessorBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void readSources() throws IOException {
+        final Path sourceDir = Paths.get(System.getProperty("basedir", "."), "src", "test", "projects", "build", "src");
+        try (Stream<Path> paths = Files.find(sourceDir, Integer.MAX_VALUE, (path, attrs) -> attrs.isRegularFile() && path.toString().endsWith(".java"))) {
+            sources = paths.map(path -> FileInfo.create(path.toString(), sourceDir.relativize(path).toString())).collect(Collectors.toList());
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalStateException("No sources found in " + sourceDir.toAbsolutePath());
+        }
+        contents = sources.stream().map(source -> {
+            try {
+                return Files.readAllBytes(Paths.get(source.sourcePath()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * The previous behavior: every source is parsed
+     */
+    @Benchmark
+    public Problems preprocessAll(OutputDir outputDir) {
+        final Problems toReturn = new Problems();
+        JavaPreprocessor.preprocessFiles(sources, outputDir.path, toReturn);
+        return toReturn;
+    }
+
+    /**
+     * Sources are scanned, and only the ones mentioning <code>GwtIncompatible</code> are parsed
+     */
+    @Benchmark
+    public List<FileInfo> preprocessCandidates(OutputDir outputDir) throws IOException {
+        return new GwtIncompatiblePreprocessor(outputDir.path.toFile()).preprocess(sources);
+    }
+
+    /**
+     * The cost of the scan alone, on sources already read
+     */
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (byte[] content : contents) {
+            blackhole.consume(GwtIncompatiblePreprocessor.mayContainGwtIncompatible(content));
+        }
+    }
+
+    /**
+     * A fresh output directory for each invocation of the benchmarks writing preprocessed sources, kept apart so that
+     * the per-invocation setup does not affect the others
+     */
+    @State(Scope.Thread)
+    public static class OutputDir {
+
+        private Path path;
+
+        @Setup(Level.Invocation)
+        public void create() throws IOException {
+            path = Files.createTempDirectory("preprocessed");
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            try (Stream<Path> toDelete = Files.walk(path)) {
+                toDelete.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.j2cl.frontend.FrontendUtils.FileInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GwtIncompatiblePreprocessorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mayContainGwtIncompatible() {
+        assertTrue(GwtIncompatiblePreprocessor.mayContainGwtIncompatible("@GwtIncompatible\nclass A {}".getBytes()));
+        assertTrue(GwtIncompatiblePreprocessor.mayContainGwtIncompatible("class A { @com.google.common.annotations.GwtIncompatible void a() {} }".getBytes()));
+        assertTrue(GwtIncompatiblePreprocessor.mayContainGwtIncompatible("GwtIncompatible".getBytes()));
+        assertFalse(GwtIncompatiblePreprocessor.mayContainGwtIncompatible("class A { @GwtCompatible void a() {} }".getBytes()));
+        assertFalse(GwtIncompatiblePreprocessor.mayContainGwtIncompatible("GwtIncompatibl".getBytes()));
+        assertFalse(GwtIncompatiblePreprocessor.mayContainGwtIncompatible(new byte[0]));
+    }
+
+    @Test
+    public void preprocessWithoutGwtIncompatible() throws Exception {
+        final File source = new File(temporaryFolder.newFolder("src", "p"), "A.java");
+        final byte[] content = "package p; class A { @GwtCompatible void a() {} }".getBytes(StandardCharsets.UTF_8);
+        Files.write(source.toPath(), content);
+        final File outputDirectory = temporaryFolder.newFolder("preprocessed");
+        // copied as it is, without going through the preprocessor
+        final List<FileInfo> preprocessed = new GwtIncompatiblePreprocessor(outputDirectory).preprocess(Collections.singletonList(FileInfo.create(source.getPath(), "p/A.java")));
+        final File copied = new File(outputDirectory, "p/A.java");
+        assertEquals(1, preprocessed.size());
+        assertEquals(copied.toPath().toString(), preprocessed.get(0).sourcePath());
+        assertArrayEquals(content, Files.readAllBytes(copied.toPath()));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cardosi.mojo.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+import com.google.j2cl.frontend.FrontendUtils.FileInfo;
+import com.sun.source.util.Trees;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JavacTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getGeneratedSources() throws Exception {
+        final Path sourceDir = temporaryFolder.newFolder("src").toPath();
+        final Path foo = writeSource(sourceDir, "Foo", "@" + Factory.class.getCanonicalName() + " public class Foo { }");
+        final Path bar = writeSource(sourceDir, "Bar", "public class Bar { }");
+        final File generatedDir = temporaryFolder.newFolder("generated");
+        final Javac javac = newJavac(FactoryProcessor.class, generatedDir);
+        try {
+            assertTrue(javac.compile(Arrays.asList(toFileInfo(foo), toFileInfo(bar))));
+            final Path fooFactory = generatedDir.toPath().resolve("p/FooFactory.java").toAbsolutePath().normalize();
+            assertTrue(Files.exists(fooFactory));
+            final Map<String, Set<String>> generatedSources = javac.getGeneratedSources();
+            assertEquals(Collections.singleton(fooFactory.toString()), generatedSources.keySet());
+            assertEquals(Collections.singleton(foo.toString()), generatedSources.get(fooFactory.toString()));
+        } finally {
+            javac.close();
+        }
+    }
+
+    @Test
+    public void getGeneratedSourcesOfAggregatingProcessor() throws Exception {
+        final Path sourceDir = temporaryFolder.newFolder("src").toPath();
+        final Path foo = writeSource(sourceDir, "Foo", "@" + Registered.class.getCanonicalName() + " public class Foo { }");
+        final Path bar = writeSource(sourceDir, "Bar", "@" + Registered.class.getCanonicalName() + " public class Bar { }");
+        final File generatedDir = temporaryFolder.newFolder("generated");
+        final Javac javac = newJavac(RegistryProcessor.class, generatedDir);
+        try {
+            final Path registry = generatedDir.toPath().resolve("p/Registry.java").toAbsolutePath().normalize();
+            // compiling only the modified source, the processor sees it alone: the registry misses Bar
+            assertTrue(javac.compile(Collections.singletonList(toFileInfo(foo))));
+            assertEquals(Collections.singleton(foo.toString()), javac.getGeneratedSources().get(registry.toString()));
+            assertFalse(new String(Files.readAllBytes(registry), StandardCharsets.UTF_8).contains("Bar"));
+            // hence all the sources of a module generating sources are compiled together
+            assertTrue(javac.compile(Arrays.asList(toFileInfo(foo), toFileInfo(bar))));
+            assertEquals(new HashSet<>(Arrays.asList(foo.toString(), bar.toString())), javac.getGeneratedSources().get(registry.toString()));
+            assertTrue(new String(Files.readAllBytes(registry), StandardCharsets.UTF_8).contains("Bar"));
+        } finally {
+            javac.close();
+        }
+    }
+
+    /**
+     * Returns a <code>Javac</code> finding the given processor in the classpath, as javac does
+     */
+    private Javac newJavac(Class<? extends Processor> processor, File generatedDir) throws Exception {
+        final File processorDir = temporaryFolder.newFolder("processor");
+        final Path services = processorDir.toPath().resolve("META-INF/services/" + Processor.class.getName());
+        Files.createDirectories(services.getParent());
+        Files.write(services, processor.getName().getBytes(StandardCharsets.UTF_8));
+        final File testClasses = new File(JavacTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        final File classesDir = temporaryFolder.newFolder("classes");
+        final Javac toReturn = new Javac(generatedDir, Arrays.asList(classesDir, processorDir, testClasses), classesDir, temporaryFolder.newFile("bootstrap.jar"));
+        // -bootclasspath is not supported by javac 9+
+        toReturn.javacOptions = Collections.singletonList("-implicit:none");
+        return toReturn;
+    }
+
+    private static Path writeSource(Path sourceDir, String simpleName, String body) throws IOException {
+        final Path toReturn = sourceDir.resolve("p/" + simpleName + ".java").toAbsolutePath().normalize();
+        Files.createDirectories(toReturn.getParent());
+        Files.write(toReturn, ("package p; " + body).getBytes(StandardCharsets.UTF_8));
+        return toReturn;
+    }
+
+    private static FileInfo toFileInfo(Path source) {
+        return FileInfo.create(source.toString(), source.toString());
+    }
+
+    public @interface Factory {
+    }
+
+    public @interface Registered {
+    }
+
+    /**
+     * Generates a factory for each annotated class; it requires the <code>ProcessingEnvironment</code> of javac, as
+     * many processors do
+     */
+    @SupportedAnnotationTypes("net.cardosi.mojo.tools.JavacTest.Factory")
+    public static class FactoryProcessor extends AbstractProcessor {
+
+        @Override
+        public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(processingEnv);
+            // throws IllegalArgumentException with any other ProcessingEnvironment
+            Trees.instance(processingEnv);
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            for (TypeElement annotation : annotations) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                    final String simpleName = element.getSimpleName().toString();
+                    try (Writer writer = processingEnv.getFiler().createSourceFile("p." + simpleName + "Factory", element).openWriter()) {
+                        writer.write("package p; public class " + simpleName + "Factory { public static " + simpleName + " create() { return new " + simpleName + "(); } }");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Generates a single registry of all the annotated classes, out of all of them
+     */
+    @SupportedAnnotationTypes("net.cardosi.mojo.tools.JavacTest.Registered")
+    public static class RegistryProcessor extends AbstractProcessor {
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            final List<Element> registered = new ArrayList<>();
+            annotations.forEach(annotation -> registered.addAll(roundEnv.getElementsAnnotatedWith(annotation)));
+            if (registered.isEmpty()) {
+                return true;
+            }
+            final String types = registered.stream().map(element -> element.getSimpleName() + ".class").collect(Collectors.joining(", "));
+            try (Writer writer = processingEnv.getFiler().createSourceFile("p.Registry", registered.toArray(new Element[0])).openWriter()) {
+                writer.write("package p; public class Registry { public static final Class<?>[] TYPES = { " + types + " }; }");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+    }
+}